@@ -0,0 +1,1190 @@
+import java.nio.*; //For ByteBuffer, ByteOrder and LongBuffer
+import java.util.*; //For Arrays and SplittableRandom
+import java.util.random.RandomGenerator;
+
+/**A headless game board. Holds the entire state of a single game of minesweeper in a handful of
+  *primitive arrays, so that a game can be played (or simulated) without creating any windows or panels.
+  *Squares are identified by a single index, equal to row * width + col. The board is the usual rectangle
+  *unless it is given some other Topology.
+  */
+public class Board implements Minefield
+{
+   //Moves can be packed into a single int, as the index of the square shifted left by two bits, plus one of
+   //these kinds of move, so that long sequences of moves can be kept without creating an object for each.
+
+   /**The kind of move which reveals a square. */
+   public static final int REVEAL = 0;
+
+   /**The kind of move which flags or unflags a square. */
+   public static final int FLAG = 1;
+
+   /**The kind of move which reveals everything around a revealed square. */
+   public static final int CHORD = 2;
+
+   //The status of a game, as returned by getStatus.
+
+   /**The status of a game whose mines have not been placed yet. */
+   public static final int READY = 0;
+
+   /**The status of a game being played. */
+   public static final int PLAYING = 1;
+
+   /**The status of a game that has been won. */
+   public static final int WON = 2;
+
+   /**The status of a game that has been lost. */
+   public static final int LOST = 3;
+
+   /**The bytes every snapshot starts with: "MSS" and the version of the format. */
+   private static final byte[] SNAPSHOT_MAGIC = {'M', 'S', 'S', 1};
+
+   /**The size of a snapshot before the bits of its squares. */
+   private static final int SNAPSHOT_HEADER = 37;
+
+   //What is kept of each move that can be undone, at these offsets in undoMoves.
+   private static final int UNDO_START = 0; //Where its squares start in undoSquares.
+   private static final int UNDO_REVEALED = 1;
+   private static final int UNDO_FOUND = 2;
+   private static final int UNDO_FLAGS = 3;
+   private static final int UNDO_STATUS = 4;
+   private static final int UNDO_FIELDS = 5;
+
+   /**The largest number of squares a board may have, so that every packed move fits in an int. */
+   public static final int MAX_SIZE = 1 << 30;
+
+   /**The height of the board, in squares. */
+   private final int height;
+
+   /**The width of the board, in squares. */
+   private final int width;
+
+   /**The total number of mines on the board. */
+   private final int numMines;
+
+   /**One bit per square, set if that square is a mine. */
+   private final long[] mines;
+
+   /**One bit per square, set if that square has been revealed. */
+   private final long[] revealed;
+
+   /**One bit per square, set if that square has been flagged.
+     *A square should never be both revealed and flagged.
+     */
+   private final long[] flagged;
+
+   /**The number of mines adjacent to each square.
+     *This number may not be accurate for a square that is itself a mine, but that should never be needed.
+     */
+   private final byte[] adjacentMines;
+
+   /**Boards with at least one mine per this many squares have all of their counts worked out in one pass
+     *once the mines are placed. Sparser boards add each mine to its neighbors' counts as it is placed.
+     */
+   private static final int DENSE_COUNTING = 32;
+
+   /**Which squares are adjacent to which. */
+   private final Topology topology;
+
+   /**Holds the neighbors of the square currently being looked at, so that no list is created for each square. */
+   private final int[] neighborBuffer;
+
+   /**Holds the neighbors of a chorded square while they are being revealed. */
+   private final int[] chordBuffer;
+
+   /**The squares changed by the last move, in the order they changed. A reveal also uses this as its queue
+     *of squares waiting to spread to their neighbors. Every square changes at most once per move, so it never
+     *needs to be longer than the board. Created on the first move.
+     */
+   private int[] changes;
+
+   /**The number of squares changed by the last move. */
+   private int numChanged;
+
+   /**The status of the game before the last move. */
+   private int statusBefore;
+
+   /**The squares changed by a series of moves made by applyAll, each once. Created on the first series. */
+   private int[] batch;
+
+   /**One bit per square, set for the squares in batch while a series of moves is being made, and for the
+     *squares already changed while a move is being undone.
+     */
+   private long[] batchMarks;
+
+   /**What the last move changed, filled in when asked for or when there are listeners. Created when first needed. */
+   private BoardDiff diff;
+
+   /**The squares changed by each move that can still be undone, one move after another, or null if moves
+     *are not being kept to be undone.
+     */
+   private int[] undoSquares;
+
+   /**The number of squares in undoSquares. */
+   private int undoSize;
+
+   /**The counts and status before each move that can still be undone, UNDO_FIELDS per move. */
+   private int[] undoMoves;
+
+   /**The number of moves that can be undone. */
+   private int numUndoable;
+
+   /**Those told of every move, in the order they were added. */
+   private BoardDiff.Listener[] listeners = new BoardDiff.Listener[0];
+
+   /**The source of randomness used to place the mines. */
+   private RandomGenerator random = new SplittableRandom();
+
+   /**Whether or not the first square revealed should always open up, with no mines around it as well. */
+   private boolean safeOpening;
+
+   /**The number of squares revealed so far this game. */
+   private int numRevealed;
+
+   /**The number of correctly flagged mines so far. Used to end the game when all have been found. */
+   private int minesFound;
+
+   /**The number of flags currently on the board, whether or not they are correct. */
+   private int flagsPlaced;
+
+   /**Whether or not the mines have been placed. They are not placed until the first reveal, to ensure that
+     *the first square revealed is safe.
+     */
+   private boolean started;
+
+   /**Whether or not the game has been won. Cannot be true if gameLost is true. */
+   private boolean gameWon;
+
+   /**Whether or not the game has been lost. Cannot be true if gameWon is true. */
+   private boolean gameLost;
+
+   /**Constructs an empty board. The mines are not placed until the first square is revealed.
+     *
+     *@param height The height of the board
+     *@param width The width of the board
+     *@param numMines The number of mines to be placed on the board
+     */
+   public Board(int height, int width, int numMines)
+   {
+      this(checkSize(height, width), numMines);
+   }
+
+   /**Constructs an empty board of any shape. The mines are not placed until the first square is revealed.
+     *
+     *@param topology Which squares are adjacent to which
+     *@param numMines The number of mines to be placed on the board
+     */
+   public Board(Topology topology, int numMines)
+   {
+      int size = topology.size();
+      if (size < 1 || size > MAX_SIZE)
+      {
+         throw new IllegalArgumentException("Invalid board size: " + topology.getHeight() + "x" + topology.getWidth());
+      }
+      if (numMines < 0 || numMines >= size)
+      {
+         throw new IllegalArgumentException("Invalid number of mines: " + numMines);
+      }
+      this.topology = topology;
+      this.height = topology.getHeight();
+      this.width = topology.getWidth();
+      this.numMines = numMines;
+      int words = (size + 63) >>> 6;
+      mines = new long[words];
+      revealed = new long[words];
+      flagged = new long[words];
+      adjacentMines = new byte[size];
+      neighborBuffer = new int[topology.maxNeighbors()];
+      chordBuffer = new int[topology.maxNeighbors()];
+   }
+
+   /**Constructs a copy of a board, as it is now. The copy has no listeners and keeps no moves to undo.
+     *
+     *@param original The board to copy
+     */
+   private Board(Board original)
+   {
+      topology = original.topology;
+      height = original.height;
+      width = original.width;
+      numMines = original.numMines;
+      mines = original.mines.clone();
+      revealed = original.revealed.clone();
+      flagged = original.flagged.clone();
+      adjacentMines = original.adjacentMines.clone();
+      neighborBuffer = new int[original.neighborBuffer.length];
+      chordBuffer = new int[original.chordBuffer.length];
+      safeOpening = original.safeOpening;
+      numRevealed = original.numRevealed;
+      minesFound = original.minesFound;
+      flagsPlaced = original.flagsPlaced;
+      started = original.started;
+      gameWon = original.gameWon;
+      gameLost = original.gameLost;
+   }
+
+   /**Returns the usual topology for a board of the given size, if it is a valid size. */
+   private static Topology checkSize(int height, int width)
+   {
+      if (height < 1 || width < 1 || (long) height * width > MAX_SIZE)
+      {
+         throw new IllegalArgumentException("Invalid board size: " + height + "x" + width);
+      }
+      return new GridTopology(height, width);
+   }
+
+   /**Returns the height of the board.
+     *
+     *@return the height of the board.
+     */
+   public int getHeight() {return height;}
+
+   /**Returns the width of the board.
+     *
+     *@return the width of the board.
+     */
+   public int getWidth() {return width;}
+
+   /**Returns which squares are adjacent to which.
+     *
+     *@return the topology of the board.
+     */
+   public Topology getTopology() {return topology;}
+
+   /**Returns the largest number of neighbors any square can have.
+     *
+     *@return the largest number of neighbors.
+     */
+   public int getMaxNeighbors() {return neighborBuffer.length;}
+
+   /**Returns the number of squares on the board.
+     *
+     *@return the number of squares on the board.
+     */
+   public int size() {return height * width;}
+
+   /**Returns the total number of mines on the board.
+     *
+     *@return the total number of mines on the board.
+     */
+   public int getNumMines() {return numMines;}
+
+   /**Returns the number of squares revealed so far this game.
+     *
+     *@return the number of squares revealed so far this game.
+     */
+   public int getNumRevealed() {return numRevealed;}
+
+   /**Returns the number of mines left to be flagged. This assumes the flags already down are correct,
+     *so adding a flag always decreases this number, whether the flag was correctly or incorrectly placed.
+     *
+     *@return the number of mines left to be flagged.
+     */
+   public int getMinesLeft() {return numMines - flagsPlaced;}
+
+   /**Returns whether or not the mines have been placed yet.
+     *
+     *@return whether or not the mines have been placed yet.
+     */
+   public boolean isStarted() {return started;}
+
+   /**Returns whether or not the game has been won.
+     *
+     *@return whether or not the game has been won.
+     */
+   public boolean isWon() {return gameWon;}
+
+   /**Returns whether or not the game has been lost.
+     *
+     *@return whether or not the game has been lost.
+     */
+   public boolean isLost() {return gameLost;}
+
+   /**Returns the status of the game.
+     *
+     *@return READY, PLAYING, WON or LOST.
+     */
+   public int getStatus()
+   {
+      return gameWon ? WON : gameLost ? LOST : started ? PLAYING : READY;
+   }
+
+   /**Sets the source of randomness used to place the mines. Takes effect the next time the mines are placed.
+     *
+     *@param random The source of randomness
+     */
+   public void setRandom(RandomGenerator random) {this.random = random;}
+
+   /**Makes the mines be placed from a fixed seed, so that the same seed and first square always give the same board.
+     *
+     *@param seed The seed
+     */
+   public void setSeed(long seed) {random = new SplittableRandom(seed);}
+
+   /**Sets whether or not the first square revealed should always have no mines around it, so that it
+     *opens up part of the board. Takes effect the next time the mines are placed.
+     *
+     *@param safeOpening Whether or not the squares around the first square should also be safe
+     */
+   public void setSafeOpening(boolean safeOpening) {this.safeOpening = safeOpening;}
+
+   /**Returns the index of the square in the given row and column.
+     *
+     *@param row The square's row
+     *@param col The square's column
+     *@return the index of the square
+     */
+   public int index(int row, int col) {return row * width + col;}
+
+   /**Returns whether or not the given square is a mine.
+     *
+     *@param square The index of the square
+     *@return whether or not the square is a mine
+     */
+   public boolean isMine(int square) {return get(mines, square);}
+
+   /**Returns whether or not the given square has been revealed.
+     *
+     *@param square The index of the square
+     *@return whether or not the square has been revealed
+     */
+   public boolean isRevealed(int square) {return get(revealed, square);}
+
+   /**Returns whether or not the given square has been flagged.
+     *
+     *@param square The index of the square
+     *@return whether or not the square has been flagged
+     */
+   public boolean isFlagged(int square) {return get(flagged, square);}
+
+   /**Returns the number of mines adjacent to the given square.
+     *
+     *@param square The index of the square
+     *@return the number of mines adjacent to the square
+     */
+   public int getAdjacentMines(int square) {return adjacentMines[square];}
+
+   /**Randomly places the mines on the board, never on the given square. If a safe opening was asked for
+     *(and there is room for it), the squares around the given square are never mines either.
+     *
+     *@param safeSquare The index of the square which must not be a mine, or -1 to allow mines anywhere
+     */
+   public void placeMines(int safeSquare)
+   {
+      checkNotStarted();
+      int[] safe = new int[neighborBuffer.length + 1];
+      int numSafe = 0;
+      if (safeSquare >= 0)
+      {
+         safe[numSafe++] = safeSquare; //This protects the first click from being a mine.
+      }
+      if (safeOpening && safeSquare >= 0)
+      {
+         int count = neighbors(safeSquare, neighborBuffer);
+         if (size() - 1 - count >= numMines)
+         {
+            System.arraycopy(neighborBuffer, 0, safe, 1, count);
+            numSafe += count;
+         }
+      }
+      Arrays.sort(safe, 0, numSafe);
+
+      //Robert Floyd's sampling algorithm chooses numMines distinct squares out of the n squares which are
+      //allowed to be mines, using one random number per mine and the mine bitset to detect repeats.
+      boolean dense = isDense();
+      int n = size() - numSafe;
+      for (int j = n - numMines; j < n; j++)
+      {
+         int choice = skipSafe(random.nextInt(j + 1), safe, numSafe);
+         if (get(mines, choice))
+         {
+            choice = skipSafe(j, safe, numSafe);
+         }
+         if (dense)
+         {
+            set(mines, choice);
+         }
+         else
+         {
+            addMine(choice);
+         }
+      }
+      if (dense)
+      {
+         topology.countMines(mines, adjacentMines);
+      }
+      started = true;
+   }
+
+   /**Places the mines on the board in the given squares. Used to replay or construct a particular board.
+     *
+     *@param squares The indices of the mines, which must be numMines distinct squares
+     */
+   public void placeMines(int[] squares)
+   {
+      checkNotStarted();
+      if (squares.length != numMines)
+      {
+         throw new IllegalArgumentException("Expected " + numMines + " mines but got " + squares.length);
+      }
+      boolean dense = isDense();
+      for (int square : squares)
+      {
+         if (get(mines, square))
+         {
+            Arrays.fill(mines, 0);
+            Arrays.fill(adjacentMines, (byte) 0);
+            throw new IllegalArgumentException("Square " + square + " was given as a mine twice");
+         }
+         if (dense)
+         {
+            set(mines, square);
+         }
+         else
+         {
+            addMine(square);
+         }
+      }
+      if (dense)
+      {
+         topology.countMines(mines, adjacentMines);
+      }
+      started = true;
+   }
+
+   /**Returns the indices of all of the mines, from lowest to highest. Only meaningful once they have been placed.
+     *
+     *@return a new array holding the indices of the mines.
+     */
+   public int[] getMines()
+   {
+      int[] squares = new int[numMines];
+      int numFound = 0;
+      for (int word = 0; word < mines.length; word++)
+      {
+         for (long bits = mines[word]; bits != 0; bits &= bits - 1)
+         {
+            squares[numFound++] = word << 6 | Long.numberOfTrailingZeros(bits);
+         }
+      }
+      return squares;
+   }
+
+   /**Returns the number of squares changed (revealed, flagged or unflagged) by the last move.
+     *Squares which only change how they look because the game was lost are not included.
+     *
+     *@return the number of squares changed by the last move.
+     */
+   public int getNumChanged() {return numChanged;}
+
+   /**Returns one of the squares changed by the last move.
+     *
+     *@param ii Which of the changed squares to return, from 0 up to getNumChanged()
+     *@return the index of the changed square
+     */
+   public int getChanged(int ii) {return changes[ii];}
+
+   /**Packs a move into a single int.
+     *
+     *@param kind The kind of move: REVEAL, FLAG or CHORD
+     *@param square The index of the square
+     *@return the packed move
+     */
+   public static int move(int kind, int square) {return square << 2 | kind;}
+
+   /**Returns the kind of a packed move.
+     *
+     *@param move The packed move
+     *@return the kind of move: REVEAL, FLAG or CHORD
+     */
+   public static int kindOf(int move) {return move & 3;}
+
+   /**Returns the square of a packed move.
+     *
+     *@param move The packed move
+     *@return the index of the square
+     */
+   public static int squareOf(int move) {return move >>> 2;}
+
+   /**Makes a packed move.
+     *
+     *@param move The packed move
+     */
+   public void apply(int move)
+   {
+      checkMove(move);
+      beginMove();
+      play(move);
+      endMove();
+   }
+
+   /**Makes a series of packed moves as one, stopping as soon as the game is over, so that nothing after a
+     *losing move is played. Afterwards getNumChanged, getChanged and getDiff give every square changed by any
+     *of the moves, each once, and the listeners are told once. Undo takes back the whole series. Nothing is
+     *created for each move, so a long series costs little more than the squares it changes.
+     *
+     *@param moves The packed moves
+     *@param from Where the moves start in the array
+     *@param to Where the moves end in the array, exclusive
+     *@return the status of the game afterwards: READY, PLAYING, WON or LOST
+     *@throws IllegalArgumentException if any move is of an unknown kind or is off the board, in which case
+     *none of them are made
+     */
+   public int applyAll(int[] moves, int from, int to)
+   {
+      for (int ii = from; ii < to; ii++)
+      {
+         checkMove(moves[ii]);
+      }
+      if (batch == null)
+      {
+         batch = new int[size()];
+         batchMarks = new long[mines.length];
+      }
+      beginMove();
+      int numBatched = 0;
+      for (int ii = from; ii < to && !gameWon && !gameLost; ii++)
+      {
+         numChanged = 0;
+         play(moves[ii]);
+         if (undoMoves != null)
+         {
+            keepChanges(); //Every change, in order, so that undo can take back a flag placed then taken away.
+         }
+         for (int jj = 0; jj < numChanged; jj++)
+         {
+            int square = changes[jj];
+            if (!get(batchMarks, square))
+            {
+               set(batchMarks, square);
+               batch[numBatched++] = square;
+            }
+         }
+      }
+      for (int ii = 0; ii < numBatched; ii++)
+      {
+         clear(batchMarks, batch[ii]);
+      }
+      if (numBatched > 0)
+      {
+         System.arraycopy(batch, 0, changes, 0, numBatched);
+      }
+      numChanged = numBatched;
+      if (undoMoves != null && (undoSize > undoMoves[numUndoable * UNDO_FIELDS + UNDO_START]
+         || getStatus() != statusBefore))
+      {
+         numUndoable++;
+      }
+      publish();
+      return getStatus();
+   }
+
+   /**Throws an IllegalArgumentException unless a packed move is of a known kind and on the board. */
+   private void checkMove(int move)
+   {
+      if (kindOf(move) > CHORD)
+      {
+         throw new IllegalArgumentException("Unknown kind of move: " + kindOf(move));
+      }
+      if (squareOf(move) >= size())
+      {
+         throw new IllegalArgumentException("No square " + squareOf(move));
+      }
+   }
+
+   /**Makes a packed move, as part of the current move. */
+   private void play(int move)
+   {
+      int square = squareOf(move);
+      switch (kindOf(move))
+      {
+         case REVEAL: playReveal(square); break;
+         case FLAG: playFlag(square); break;
+         default: playChord(square); break;
+      }
+   }
+
+   /**Reveals the given square, placing the mines first if the game has not begun yet.
+     *Does nothing if the square is flagged or already revealed, or if the game is over.
+     *
+     *@param square The index of the square
+     */
+   public void reveal(int square)
+   {
+      beginMove();
+      playReveal(square);
+      endMove();
+   }
+
+   /**Reveals a square, as part of the current move. */
+   private void playReveal(int square)
+   {
+      if (!gameWon && !gameLost)
+      {
+         if (!started)
+         {
+            placeMines(square); //The game begins here.
+         }
+         open(square);
+         spread();
+      }
+   }
+
+   /**Flags the given square, or removes the flag if it is already flagged.
+     *Does nothing if the square is revealed, if the game has not begun yet, or if the game is over.
+     *
+     *@param square The index of the square
+     */
+   public void toggleFlag(int square)
+   {
+      beginMove();
+      playFlag(square);
+      endMove();
+   }
+
+   /**Flags or unflags a square, as part of the current move. */
+   private void playFlag(int square)
+   {
+      if (!gameWon && !gameLost && started && !get(revealed, square))
+      {
+         if (get(flagged, square)) //just removed a flag
+         {
+            clear(flagged, square);
+            flagsPlaced--;
+            if (get(mines, square))
+            {
+               minesFound--;
+            }
+         }
+         else //just placed a flag
+         {
+            set(flagged, square);
+            flagsPlaced++;
+            if (get(mines, square))
+            {
+               minesFound++;
+            }
+         }
+         changed(square);
+         if (flagsPlaced == numMines && minesFound == numMines)
+         {
+            gameWon = true;
+         }
+      }
+   }
+
+   /**Reveals everything around the given revealed square, provided that it is already touching its
+     *correct number of flags. Does nothing otherwise.
+     *
+     *@param square The index of the square
+     */
+   public void chord(int square)
+   {
+      beginMove();
+      playChord(square);
+      endMove();
+   }
+
+   /**Chords a square, as part of the current move. */
+   private void playChord(int square)
+   {
+      if (!gameWon && !gameLost && get(revealed, square) && countAdjacentFlags(square) == adjacentMines[square])
+      {
+         int count = neighbors(square, chordBuffer);
+         for (int ii = 0; ii < count; ii++)
+         {
+            open(chordBuffer[ii]);
+         }
+         spread();
+      }
+   }
+
+   /**Ends the game as a loss, for example when the player runs out of time. */
+   public void forfeit()
+   {
+      beginMove();
+      if (!gameWon)
+      {
+         gameLost = true;
+      }
+      endMove();
+   }
+
+   /**Resets the board to its pre-game state. Only the mines and their counts are cleared one at a time;
+     *the revealed and flagged squares are cleared 64 at a time.
+     */
+   public void reset()
+   {
+      for (int word = 0; word < mines.length; word++)
+      {
+         for (long bits = mines[word]; bits != 0; bits &= bits - 1)
+         {
+            int count = neighbors((word << 6) + Long.numberOfTrailingZeros(bits), neighborBuffer);
+            for (int ii = 0; ii < count; ii++)
+            {
+               adjacentMines[neighborBuffer[ii]] = 0;
+            }
+         }
+         mines[word] = 0;
+      }
+      Arrays.fill(revealed, 0);
+      Arrays.fill(flagged, 0);
+      numRevealed = 0;
+      minesFound = 0;
+      flagsPlaced = 0;
+      statusBefore = getStatus();
+      numChanged = 0;
+      started = false;
+      gameWon = false;
+      gameLost = false;
+      undoSize = 0;
+      numUndoable = 0;
+      diff().recordReset(statusBefore, READY);
+      publish();
+   }
+
+   /**Returns a copy of the board as it is now, with its own source of randomness and no listeners, which can
+     *be played on without changing this board, for example to look ahead.
+     *
+     *@return the copy
+     */
+   public Board copy()
+   {
+      return new Board(this);
+   }
+
+   /**Keeps every move from now on, so that it can be undone, or stops keeping them. Either way, the moves
+     *made so far cannot be undone.
+     *
+     *@param undoable Whether or not moves should be kept to be undone
+     */
+   public void setUndoable(boolean undoable)
+   {
+      undoSquares = undoable ? new int[64] : null;
+      undoMoves = undoable ? new int[16 * UNDO_FIELDS] : null;
+      undoSize = 0;
+      numUndoable = 0;
+   }
+
+   /**Returns the number of moves that can be undone.
+     *
+     *@return the number of moves that can be undone.
+     */
+   public int getNumUndoable() {return numUndoable;}
+
+   /**Undoes the last move that can still be undone, in time proportional to the squares it changed, and tells
+     *the listeners what changed back. Undoing the first move of a game resets the board, as the mines were
+     *placed by that move. Does nothing if there is no move to undo.
+     *
+     *@return whether or not a move was undone
+     */
+   public boolean undo()
+   {
+      if (numUndoable == 0) {return false;}
+      int at = --numUndoable * UNDO_FIELDS;
+      int start = undoMoves[at + UNDO_START];
+      int status = undoMoves[at + UNDO_STATUS];
+      int oldRevealed = undoMoves[at + UNDO_REVEALED];
+      int oldFound = undoMoves[at + UNDO_FOUND];
+      int oldFlags = undoMoves[at + UNDO_FLAGS];
+      if (status == READY)
+      {
+         reset();
+         return true;
+      }
+      beginMove(); //Which uses the place this move was kept in.
+      if (batchMarks == null)
+      {
+         batchMarks = new long[mines.length];
+      }
+      for (int ii = undoSize - 1; ii >= start; ii--)
+      {
+         int square = undoSquares[ii];
+         if (get(revealed, square))
+         {
+            clear(revealed, square);
+         }
+         else
+         {
+            flagged[square >>> 6] ^= 1L << square; //Every other change placed or took away a flag.
+         }
+         if (!get(batchMarks, square)) //A series of moves may have flagged and unflagged a square many times.
+         {
+            set(batchMarks, square);
+            changed(square);
+         }
+      }
+      for (int ii = 0; ii < numChanged; ii++)
+      {
+         clear(batchMarks, changes[ii]);
+      }
+      undoSize = start;
+      numRevealed = oldRevealed;
+      minesFound = oldFound;
+      flagsPlaced = oldFlags;
+      gameWon = status == WON;
+      gameLost = status == LOST;
+      publish();
+      return true;
+   }
+
+   /**Saves the whole state of the game in a compact binary form, which restore can bring back later, on this
+     *board or another of the same size. In version 1, a snapshot is:
+     *<ul>
+     *<li>the bytes "MSS" and the version, 1</li>
+     *<li>the height, width and number of mines, as 4 byte ints</li>
+     *<li>a byte of flags: 1 if the mines have been placed, 2 if the game was won, 4 if lost, and 8 for a safe opening</li>
+     *<li>the number of squares revealed, of mines flagged and of flags, as 4 byte ints</li>
+     *<li>the time played so far in milliseconds, as an 8 byte long</li>
+     *<li>one bit per square for the mines, then the revealed squares, then the flagged squares, 64 to a long</li>
+     *</ul>
+     *Everything is little-endian. The counts of adjacent mines are worked out again when restored.
+     *
+     *@param elapsedMillis The time played so far, which is kept with the snapshot
+     *@return the snapshot
+     */
+   public byte[] snapshot(long elapsedMillis)
+   {
+      int words = mines.length;
+      ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_HEADER + 3 * 8 * words).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.put(SNAPSHOT_MAGIC).putInt(height).putInt(width).putInt(numMines);
+      buffer.put((byte) ((started ? 1 : 0) | (gameWon ? 2 : 0) | (gameLost ? 4 : 0) | (safeOpening ? 8 : 0)));
+      buffer.putInt(numRevealed).putInt(minesFound).putInt(flagsPlaced).putLong(elapsedMillis);
+      LongBuffer bits = buffer.asLongBuffer();
+      bits.put(mines).put(revealed).put(flagged);
+      return buffer.array();
+   }
+
+   /**Brings back the state saved in a snapshot. The counts of adjacent mines are only worked out again if the
+     *mines are not the ones already on the board, so rolling a game back to an earlier snapshot of itself is
+     *cheaper still. The moves made so far can no longer be undone, and the listeners are told that the
+     *whole board changed, as by a reset.
+     *
+     *@param snapshot The snapshot, made by snapshot on a board of the same size
+     *@return the time played when the snapshot was made, in milliseconds
+     *@throws IllegalArgumentException if the snapshot is not one of a board of this size
+     */
+   public long restore(byte[] snapshot)
+   {
+      ByteBuffer buffer = ByteBuffer.wrap(snapshot).order(ByteOrder.LITTLE_ENDIAN);
+      int words = mines.length;
+      if (snapshot.length != SNAPSHOT_HEADER + 3 * 8 * words
+         || !Arrays.equals(snapshot, 0, SNAPSHOT_MAGIC.length, SNAPSHOT_MAGIC, 0, SNAPSHOT_MAGIC.length))
+      {
+         throw new IllegalArgumentException("Not a version " + SNAPSHOT_MAGIC[3] + " snapshot of this board");
+      }
+      buffer.position(SNAPSHOT_MAGIC.length);
+      if (buffer.getInt() != height || buffer.getInt() != width || buffer.getInt() != numMines)
+      {
+         throw new IllegalArgumentException("The snapshot is of a board of another size");
+      }
+      int before = getStatus();
+      int flags = buffer.get();
+      numRevealed = buffer.getInt();
+      minesFound = buffer.getInt();
+      flagsPlaced = buffer.getInt();
+      long elapsedMillis = buffer.getLong();
+      LongBuffer bits = buffer.asLongBuffer();
+      if (bits.slice(0, words).mismatch(LongBuffer.wrap(mines)) >= 0)
+      {
+         bits.get(0, mines);
+         if (isDense())
+         {
+            topology.countMines(mines, adjacentMines);
+         }
+         else
+         {
+            Arrays.fill(adjacentMines, (byte) 0);
+            for (int word = 0; word < words; word++)
+            {
+               for (long mine = mines[word]; mine != 0; mine &= mine - 1)
+               {
+                  addMine((word << 6) + Long.numberOfTrailingZeros(mine));
+               }
+            }
+         }
+      }
+      bits.get(words, revealed);
+      bits.get(2 * words, flagged);
+      started = (flags & 1) != 0;
+      gameWon = (flags & 2) != 0;
+      gameLost = (flags & 4) != 0;
+      safeOpening = (flags & 8) != 0;
+      numChanged = 0;
+      undoSize = 0;
+      numUndoable = 0;
+      diff().recordReset(before, getStatus());
+      publish();
+      return elapsedMillis;
+   }
+
+   /**Returns what the last move changed: the squares it changed, in runs along the rows, and the status of
+     *the game before and after. The same BoardDiff is filled in again after every move, so it is only good
+     *until the next one.
+     *
+     *@return what the last move changed
+     */
+   public BoardDiff getDiff()
+   {
+      BoardDiff diff = diff();
+      if (!diff.isCurrent())
+      {
+         diff.record(this, statusBefore);
+      }
+      return diff;
+   }
+
+   /**Adds a listener to be told what each move changes, including resets, straight after the move.
+     *Working out the diff of each move costs time in proportion to the squares it changed, and only while
+     *there are listeners.
+     *
+     *@param listener The listener
+     */
+   public void addListener(BoardDiff.Listener listener)
+   {
+      listeners = Arrays.copyOf(listeners, listeners.length + 1);
+      listeners[listeners.length - 1] = listener;
+   }
+
+   /**Removes a listener, if it was added.
+     *
+     *@param listener The listener
+     */
+   public void removeListener(BoardDiff.Listener listener)
+   {
+      for (int ii = 0; ii < listeners.length; ii++)
+      {
+         if (listeners[ii] == listener)
+         {
+            BoardDiff.Listener[] fewer = new BoardDiff.Listener[listeners.length - 1];
+            System.arraycopy(listeners, 0, fewer, 0, ii);
+            System.arraycopy(listeners, ii + 1, fewer, ii, fewer.length - ii);
+            listeners = fewer;
+            return;
+         }
+      }
+   }
+
+   /**Counts the number of flagged squares adjacent to the given square.
+     *
+     *@param square The index of the square
+     *@return the number of adjacent squares which are flagged
+     */
+   public int countAdjacentFlags(int square)
+   {
+      int adjacentFlags = 0;
+      int count = neighbors(square, neighborBuffer);
+      for (int ii = 0; ii < count; ii++)
+      {
+         if (get(flagged, neighborBuffer[ii]))
+         {
+            adjacentFlags++;
+         }
+      }
+      return adjacentFlags;
+   }
+
+   /**Reveals a single square, if it is neither revealed nor flagged. Revealing a mine loses the game.
+     *
+     *@param square The index of the square
+     */
+   private void open(int square)
+   {
+      if (get(revealed, square) || get(flagged, square)) {return;}
+      set(revealed, square);
+      changed(square);
+      if (get(mines, square))
+      {
+         gameLost = true;
+      }
+      else
+      {
+         numRevealed++;
+      }
+   }
+
+   /**Spreads a reveal outwards, breadth first, from the squares revealed so far this move.
+     *Blank squares automatically reveal everything around them, and all (non-mine) squares reveal
+     *any blank squares around them. Neither rule can ever reveal a mine.
+     */
+   private void spread()
+   {
+      int head = 0;
+      while (head < numChanged)
+      {
+         int square = changes[head++];
+         if (get(mines, square)) {continue;} //A mine that was just clicked on does not spread.
+         boolean blank = adjacentMines[square] == 0;
+         int count = neighbors(square, neighborBuffer);
+         for (int ii = 0; ii < count; ii++)
+         {
+            int neighbor = neighborBuffer[ii];
+            if (!get(revealed, neighbor) && !get(flagged, neighbor)
+               && (blank || (!get(mines, neighbor) && adjacentMines[neighbor] == 0)))
+            {
+               set(revealed, neighbor);
+               numRevealed++;
+               changes[numChanged++] = neighbor;
+            }
+         }
+      }
+      if (numRevealed == size() - numMines && !gameLost)
+      {
+         gameWon = true; //The player has revealed every non-mine square, even without flagging mines.
+      }
+   }
+
+   /**Starts a move, forgetting the squares changed by the last one. */
+   private void beginMove()
+   {
+      statusBefore = getStatus();
+      if (undoMoves != null) //Kept in the next free place, though only counted once the move has changed something.
+      {
+         if ((numUndoable + 1) * UNDO_FIELDS > undoMoves.length)
+         {
+            undoMoves = Arrays.copyOf(undoMoves, 2 * undoMoves.length);
+         }
+         int at = numUndoable * UNDO_FIELDS;
+         undoMoves[at + UNDO_START] = undoSize;
+         undoMoves[at + UNDO_REVEALED] = numRevealed;
+         undoMoves[at + UNDO_FOUND] = minesFound;
+         undoMoves[at + UNDO_FLAGS] = flagsPlaced;
+         undoMoves[at + UNDO_STATUS] = statusBefore;
+      }
+      numChanged = 0;
+      if (diff != null)
+      {
+         diff.invalidate();
+      }
+   }
+
+   /**Finishes a move, keeping it to be undone if it changed anything and telling the listeners what it changed. */
+   private void endMove()
+   {
+      if (undoMoves != null && (numChanged > 0 || getStatus() != statusBefore))
+      {
+         keepChanges();
+         numUndoable++;
+      }
+      publish();
+   }
+
+   /**Adds the squares changed so far by the current move to those kept to be undone. */
+   private void keepChanges()
+   {
+      if (undoSize + numChanged > undoSquares.length)
+      {
+         undoSquares = Arrays.copyOf(undoSquares, Math.max(undoSize + numChanged, 2 * undoSquares.length));
+      }
+      if (numChanged > 0)
+      {
+         System.arraycopy(changes, 0, undoSquares, undoSize, numChanged);
+      }
+      undoSize += numChanged;
+   }
+
+   /**Returns the diff filled in after each move, creating it if needed. */
+   private BoardDiff diff()
+   {
+      if (diff == null)
+      {
+         diff = new BoardDiff();
+      }
+      return diff;
+   }
+
+   /**Tells each listener what the last move changed, if there are any. */
+   private void publish()
+   {
+      if (listeners.length == 0) {return;}
+      getDiff();
+      for (BoardDiff.Listener listener : listeners)
+      {
+         listener.moveMade(this, diff);
+      }
+   }
+
+   /**Records that a square was changed by the current move.
+     *
+     *@param square The index of the square
+     */
+   private void changed(int square)
+   {
+      if (changes == null)
+      {
+         changes = new int[size()];
+      }
+      changes[numChanged++] = square;
+   }
+
+   /**Returns whether or not there are enough mines to work out all of the counts in one pass. */
+   private boolean isDense()
+   {
+      return numMines >= size() / DENSE_COUNTING;
+   }
+
+   /**Makes the given square a mine, adding it to the count of each of its neighbors. */
+   private void addMine(int square)
+   {
+      set(mines, square);
+      int count = neighbors(square, neighborBuffer);
+      for (int ii = 0; ii < count; ii++)
+      {
+         adjacentMines[neighborBuffer[ii]]++;
+      }
+   }
+
+   /**Maps an index among the squares allowed to be mines to the matching index on the whole board. Also used
+     *by ChunkedBoard, for the squares of one chunk.
+     *
+     *@param choice An index from 0 up to the number of squares allowed to be mines
+     *@param safe The sorted indices of the squares which may not be mines
+     *@param numSafe The number of squares which may not be mines
+     *@return the index of the chosen square on the board
+     */
+   static int skipSafe(int choice, int[] safe, int numSafe)
+   {
+      for (int ii = 0; ii < numSafe && safe[ii] <= choice; ii++)
+      {
+         choice++;
+      }
+      return choice;
+   }
+
+   /**Throws an IllegalStateException if the mines have already been placed. */
+   private void checkNotStarted()
+   {
+      if (started)
+      {
+         throw new IllegalStateException("The mines have already been placed");
+      }
+   }
+
+   /**Finds all of the squares adjacent to the given one.
+     *
+     *@param square The index of the square
+     *@param neighbors An array of length at least getMaxNeighbors() to be filled with the indices of the adjacent squares
+     *@return the number of adjacent squares
+     */
+   public int neighbors(int square, int[] neighbors)
+   {
+      return topology.neighbors(square, neighbors);
+   }
+
+   /**Returns the bit for the given square. */
+   private static boolean get(long[] bits, int square)
+   {
+      return (bits[square >>> 6] & (1L << square)) != 0;
+   }
+
+   /**Sets the bit for the given square. */
+   private static void set(long[] bits, int square)
+   {
+      bits[square >>> 6] |= 1L << square;
+   }
+
+   /**Clears the bit for the given square. */
+   private static void clear(long[] bits, int square)
+   {
+      bits[square >>> 6] &= ~(1L << square);
+   }
+}
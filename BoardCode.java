@@ -0,0 +1,222 @@
+import java.nio.*; //For BufferUnderflowException, ByteBuffer and ByteOrder
+import java.util.*; //For Arrays and Base64
+
+/**Writes boards in a compact binary form, and as short codes which can be shared and played again exactly.
+  *
+  *A board is written as a version byte, then its height, width and first square plus one (so that 0 means
+  *none) as unsigned varints of seven bits per byte, then one bit per square, set for each mine, starting
+  *from the lowest bit of the first byte. A Hard board takes at most 65 bytes, or 87 characters as a code.
+  *
+  *Boards are read from and written to ByteBuffers, so that millions of them can be streamed through one
+  *buffer without allocating anything but the layouts read back.
+  */
+public class BoardCode
+{
+   /**The version of the format, written first so that later versions can still read older boards. */
+   public static final int VERSION = 1;
+
+   /**Turns bytes into codes safe to use in file names and URLs. */
+   private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+   /**Turns codes back into bytes. */
+   private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+   /**This class is not meant to be instantiated. */
+   private BoardCode() {}
+
+   /**Returns the largest number of bytes a board of the given size can take.
+     *
+     *@param height The height of the board
+     *@param width The width of the board
+     *@return the largest number of bytes
+     */
+   public static int maxLength(int height, int width)
+   {
+      return 1 + 3 * 5 + (int) (((long) height * width + 7) >>> 3);
+   }
+
+   /**Writes a board at the buffer's position, moving the position past it.
+     *
+     *@param layout The board
+     *@param out The buffer, which must have at least maxLength bytes remaining
+     */
+   public static void write(Layout layout, ByteBuffer out)
+   {
+      out.put((byte) VERSION);
+      writeVarint(out, layout.getHeight());
+      writeVarint(out, layout.getWidth());
+      writeVarint(out, layout.getStart() + 1);
+      int[] mines = layout.getMines(); //Already in order, so each word is made from the next few mines.
+      int numBytes = (layout.getHeight() * layout.getWidth() + 7) >>> 3;
+      boolean swap = out.order() == ByteOrder.BIG_ENDIAN; //The bitmap is always little-endian.
+      int next = 0;
+      int ii = 0;
+      for (; ii + 8 <= numBytes; ii += 8) //Eight bytes at a time, then the rest one at a time.
+      {
+         long bits = 0;
+         while (next < mines.length && mines[next] >>> 6 == ii >>> 3)
+         {
+            bits |= 1L << mines[next++];
+         }
+         out.putLong(swap ? Long.reverseBytes(bits) : bits);
+      }
+      for (; ii < numBytes; ii++)
+      {
+         int bits = 0;
+         while (next < mines.length && mines[next] >>> 3 == ii)
+         {
+            bits |= 1 << (mines[next++] & 7);
+         }
+         out.put((byte) bits);
+      }
+   }
+
+   /**Reads a board from the buffer's position, moving the position past it.
+     *
+     *@param in The buffer
+     *@return the board
+     *@throws IllegalArgumentException if the bytes are not a board in this format
+     *@throws BufferUnderflowException if the buffer ends part way through the board
+     */
+   public static Layout read(ByteBuffer in)
+   {
+      int version = in.get();
+      if (version != VERSION)
+      {
+         throw new IllegalArgumentException("Unknown board format version " + version);
+      }
+      int height = readVarint(in);
+      int width = readVarint(in);
+      int start = readVarint(in) - 1;
+      if (height <= 0 || width <= 0 || (long) height * width > Board.MAX_SIZE || start >= height * width)
+      {
+         throw new IllegalArgumentException("Impossible board: " + height + "x" + width + " starting at " + start);
+      }
+      int size = height * width;
+      int numBytes = (size + 7) >>> 3;
+      if (in.remaining() < numBytes)
+      {
+         throw new BufferUnderflowException();
+      }
+
+      //Counts the mines first, so that they can be read straight into an array of the right length.
+      boolean swap = in.order() == ByteOrder.BIG_ENDIAN;
+      int from = in.position();
+      int numWords = numBytes >>> 3;
+      int numMines = 0;
+      for (int ii = 0; ii < numWords; ii++)
+      {
+         numMines += Long.bitCount(in.getLong(from + 8 * ii));
+      }
+      for (int ii = 8 * numWords; ii < numBytes; ii++)
+      {
+         numMines += Integer.bitCount(in.get(from + ii) & 0xFF);
+      }
+      if ((size & 7) != 0 && (in.get(from + numBytes - 1) & 0xFF) >>> (size & 7) != 0)
+      {
+         throw new IllegalArgumentException("Mines beyond the end of the board");
+      }
+      int[] mines = new int[numMines];
+      int numFound = 0;
+      for (int ii = 0; ii < numWords; ii++)
+      {
+         long bits = in.getLong();
+         for (bits = swap ? Long.reverseBytes(bits) : bits; bits != 0; bits &= bits - 1)
+         {
+            mines[numFound++] = ii << 6 | Long.numberOfTrailingZeros(bits);
+         }
+      }
+      for (int ii = 8 * numWords; ii < numBytes; ii++)
+      {
+         for (int bits = in.get() & 0xFF; bits != 0; bits &= bits - 1)
+         {
+            mines[numFound++] = ii << 3 | Integer.numberOfTrailingZeros(bits);
+         }
+      }
+      if (start >= 0 && Arrays.binarySearch(mines, start) >= 0)
+      {
+         throw new IllegalArgumentException("The first square " + start + " is a mine");
+      }
+      return new Layout(height, width, start, mines, null);
+   }
+
+   /**Moves the buffer's position past a board without reading it.
+     *
+     *@param in The buffer
+     *@throws IllegalArgumentException if the bytes are not a board in this format
+     */
+   public static void skip(ByteBuffer in)
+   {
+      int version = in.get();
+      if (version != VERSION)
+      {
+         throw new IllegalArgumentException("Unknown board format version " + version);
+      }
+      long size = (long) readVarint(in) * readVarint(in);
+      readVarint(in);
+      in.position(in.position() + (int) ((size + 7) >>> 3));
+   }
+
+   /**Returns the short code for a board.
+     *
+     *@param layout The board
+     *@return the code, made only of letters, digits, '-' and '_'
+     */
+   public static String toCode(Layout layout)
+   {
+      ByteBuffer buffer = ByteBuffer.allocate(maxLength(layout.getHeight(), layout.getWidth()));
+      write(layout, buffer);
+      return ENCODER.encodeToString(Arrays.copyOf(buffer.array(), buffer.position()));
+   }
+
+   /**Reads a board back from its short code.
+     *
+     *@param code The code
+     *@return the board
+     *@throws IllegalArgumentException if the code is not a board
+     */
+   public static Layout fromCode(String code)
+   {
+      ByteBuffer buffer = ByteBuffer.wrap(DECODER.decode(code.trim()));
+      try
+      {
+         Layout layout = read(buffer);
+         if (buffer.hasRemaining())
+         {
+            throw new IllegalArgumentException("Extra characters after the board");
+         }
+         return layout;
+      }
+      catch (BufferUnderflowException e)
+      {
+         throw new IllegalArgumentException("The code is too short", e);
+      }
+   }
+
+   /**Writes an unsigned number seven bits at a time, lowest first, with the top bit set on all but the last byte. */
+   static void writeVarint(ByteBuffer out, int value)
+   {
+      while ((value & ~0x7F) != 0)
+      {
+         out.put((byte) (value & 0x7F | 0x80));
+         value >>>= 7;
+      }
+      out.put((byte) value);
+   }
+
+   /**Reads a number written by writeVarint. */
+   static int readVarint(ByteBuffer in)
+   {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7)
+      {
+         int b = in.get();
+         value |= (b & 0x7F) << shift;
+         if (b >= 0)
+         {
+            return value;
+         }
+      }
+      throw new IllegalArgumentException("Number too long");
+   }
+}
@@ -0,0 +1,298 @@
+import java.util.Arrays;
+
+/**What one move changed on a Board: what each square it changed shows now, and the status of the game
+  *before and after. The squares are kept in order on the board, as runs of squares next to each other in the
+  *same row, so that a cascade opening thousands of squares comes to a few runs, and reading it costs time in
+  *proportion to what changed, never to the size of the board.
+  *
+  *A Board fills in the same BoardDiff after every move, so one is only good until the next move; copy it
+  *to keep it.
+  */
+public class BoardDiff
+{
+   //What a changed square shows, when it is not a number.
+
+   /**A revealed mine. */
+   public static final byte MINE = -1;
+
+   /**A square that has just been flagged. */
+   public static final byte FLAGGED = -2;
+
+   /**A square whose flag has just been taken away. */
+   public static final byte HIDDEN = -3;
+
+   /**Told what each move on a Board changed. */
+   public interface Listener
+   {
+      /**Called straight after each move, undo, reset and restore, on the thread which made it.
+        *
+        *@param board The board, which must not be changed until this returns
+        *@param diff What the move changed, only good until this returns
+        */
+      void moveMade(Board board, BoardDiff diff);
+   }
+
+   /**The status of the game before the move: Board.READY, PLAYING, WON or LOST. */
+   private int statusBefore;
+
+   /**The status of the game after the move. */
+   private int statusAfter;
+
+   /**Whether or not the move was a reset or a restore, which may change every square. */
+   private boolean reset;
+
+   /**Whether or not this holds the last move made on its board. */
+   private boolean current;
+
+   /**The number of runs of squares changed. */
+   private int numRuns;
+
+   /**The first square of each run. */
+   private int[] runStart = new int[16];
+
+   /**The number of squares in each run. */
+   private int[] runLength = new int[16];
+
+   /**The number of squares changed. */
+   private int numSquares;
+
+   /**What each square changed shows now, run after run: its number, MINE, FLAGGED or HIDDEN. */
+   private byte[] values = new byte[64];
+
+   /**Holds the squares changed while they are put in order. */
+   private int[] sorted = new int[64];
+
+   /**One bit per square of the board, used to put the squares changed by a big move in order. Kept clear
+     *between moves. Grown when first needed.
+     */
+   private long[] marks = new long[0];
+
+   /**Returns the status of the game before the move.
+     *
+     *@return Board.READY, PLAYING, WON or LOST.
+     */
+   public int getStatusBefore() {return statusBefore;}
+
+   /**Returns the status of the game after the move.
+     *
+     *@return Board.READY, PLAYING, WON or LOST.
+     */
+   public int getStatusAfter() {return statusAfter;}
+
+   /**Returns whether or not the move changed the status of the game.
+     *
+     *@return whether or not the status changed.
+     */
+   public boolean isStatusChanged() {return statusBefore != statusAfter;}
+
+   /**Returns whether or not the move was a reset, which hides every square, or a restore, after which the
+     *whole board should be read again. Neither lists any squares.
+     *
+     *@return whether or not the move was a reset or a restore.
+     */
+   public boolean isReset() {return reset;}
+
+   /**Returns the number of squares changed.
+     *
+     *@return the number of squares changed.
+     */
+   public int getNumSquares() {return numSquares;}
+
+   /**Returns the number of runs of squares changed.
+     *
+     *@return the number of runs.
+     */
+   public int getNumRuns() {return numRuns;}
+
+   /**Returns the first square of a run.
+     *
+     *@param run The number of the run, in order on the board
+     *@return the index of its first square
+     */
+   public int getRunStart(int run) {return runStart[run];}
+
+   /**Returns the number of squares in a run, all in the same row.
+     *
+     *@param run The number of the run, in order on the board
+     *@return the number of squares in it
+     */
+   public int getRunLength(int run) {return runLength[run];}
+
+   /**Returns what a changed square shows now. The squares are numbered in order on the board, so the
+     *squares of the first run come first, then those of the second, and so on.
+     *
+     *@param ii The number of the changed square
+     *@return its number of adjacent mines, or MINE, FLAGGED or HIDDEN
+     */
+   public int getValue(int ii) {return values[ii];}
+
+   /**Returns a copy of this diff which is not filled in again after the next move.
+     *
+     *@return the copy
+     */
+   public BoardDiff copy()
+   {
+      BoardDiff copy = new BoardDiff();
+      copy.statusBefore = statusBefore;
+      copy.statusAfter = statusAfter;
+      copy.reset = reset;
+      copy.numRuns = numRuns;
+      copy.runStart = Arrays.copyOf(runStart, Math.max(numRuns, 1));
+      copy.runLength = Arrays.copyOf(runLength, Math.max(numRuns, 1));
+      copy.numSquares = numSquares;
+      copy.values = Arrays.copyOf(values, Math.max(numSquares, 1));
+      return copy;
+   }
+
+   /**Adds the runs to some text, each as a space, its first square, a colon, then one character for what
+     *each square shows: its number in base 36, * for a mine, F for a flag or - for a hidden square.
+     *
+     *@param text The text to add to
+     *@return the text
+     */
+   public StringBuilder appendRuns(StringBuilder text)
+   {
+      int ii = 0;
+      for (int run = 0; run < numRuns; run++)
+      {
+         text.append(' ').append(runStart[run]).append(':');
+         for (int end = ii + runLength[run]; ii < end; ii++)
+         {
+            text.append(symbolOf(values[ii]));
+         }
+      }
+      return text;
+   }
+
+   /**Returns the character used for what a square shows, as in appendRuns.
+     *
+     *@param value Its number of adjacent mines, or MINE, FLAGGED or HIDDEN
+     *@return the character
+     */
+   public static char symbolOf(int value)
+   {
+      switch (value)
+      {
+         case MINE: return '*';
+         case FLAGGED: return 'F';
+         case HIDDEN: return '-';
+         default: return Character.forDigit(value, 36);
+      }
+   }
+
+   public String toString()
+   {
+      return appendRuns(new StringBuilder().append(statusBefore).append("->").append(statusAfter)
+         .append(reset ? " reset" : "")).toString();
+   }
+
+   /**Fills this in with the squares changed by the last move on a board.
+     *
+     *@param board The board
+     *@param before The status of the game before the move
+     */
+   void record(Board board, int before)
+   {
+      statusBefore = before;
+      statusAfter = board.getStatus();
+      reset = false;
+      current = true;
+      numSquares = board.getNumChanged();
+      if (sorted.length < numSquares)
+      {
+         sorted = new int[Math.max(numSquares, 2 * sorted.length)];
+         values = new byte[sorted.length];
+      }
+      if (numSquares > board.size() >>> 6)
+      {
+         sortByMarking(board);
+      }
+      else
+      {
+         for (int ii = 0; ii < numSquares; ii++)
+         {
+            sorted[ii] = board.getChanged(ii);
+         }
+         Arrays.sort(sorted, 0, numSquares);
+      }
+      int width = board.getWidth();
+      numRuns = 0;
+      for (int ii = 0; ii < numSquares; ii++)
+      {
+         int square = sorted[ii];
+         if (ii > 0 && square == sorted[ii - 1] + 1 && square % width != 0)
+         {
+            runLength[numRuns - 1]++;
+         }
+         else
+         {
+            if (numRuns == runStart.length)
+            {
+               runStart = Arrays.copyOf(runStart, 2 * numRuns);
+               runLength = Arrays.copyOf(runLength, 2 * numRuns);
+            }
+            runStart[numRuns] = square;
+            runLength[numRuns++] = 1;
+         }
+         if (board.isRevealed(square))
+         {
+            values[ii] = board.isMine(square) ? MINE : (byte) board.getAdjacentMines(square);
+         }
+         else
+         {
+            values[ii] = board.isFlagged(square) ? FLAGGED : HIDDEN;
+         }
+      }
+   }
+
+   /**Puts the squares changed by a big move in order by marking each one on a bitset of the board, then
+     *reading the marks back, which is cheaper than sorting once there is a square for every 64 on the board.
+     */
+   private void sortByMarking(Board board)
+   {
+      int words = (board.size() + 63) >>> 6;
+      if (marks.length < words)
+      {
+         marks = new long[words];
+      }
+      int first = words;
+      int last = -1;
+      for (int ii = 0; ii < numSquares; ii++)
+      {
+         int square = board.getChanged(ii);
+         marks[square >>> 6] |= 1L << square;
+         first = Math.min(first, square >>> 6);
+         last = Math.max(last, square >>> 6);
+      }
+      int count = 0;
+      for (int word = first; word <= last; word++)
+      {
+         for (long bits = marks[word]; bits != 0; bits &= bits - 1)
+         {
+            sorted[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+         }
+         marks[word] = 0;
+      }
+   }
+
+   /**Fills this in for a reset or a restore, which changes no square in particular.
+     *
+     *@param before The status of the game before the reset
+     *@param after The status of the game after the reset
+     */
+   void recordReset(int before, int after)
+   {
+      statusBefore = before;
+      statusAfter = after;
+      reset = true;
+      current = true;
+      numSquares = 0;
+      numRuns = 0;
+   }
+
+   /**Marks this as no longer holding the last move, once another has begun. */
+   void invalidate() {current = false;}
+
+   /**Returns whether or not this holds the last move made on its board. */
+   boolean isCurrent() {return current;}
+}
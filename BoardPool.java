@@ -0,0 +1,244 @@
+import java.util.*; //For HashMap, LinkedHashMap, Map and SplittableRandom
+import java.util.concurrent.*; //For BlockingDeque, ExecutorService and LinkedBlockingDeque
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**Keeps a few boards ready for each Mode and for the last few custom sizes played, generated on a
+  *background thread, so that the first click of a game costs the same however big the board is.
+  *
+  *A no-guess board is dealt by looking for a ready layout which can be started from the clicked square,
+  *trying each way it can be flipped or turned, and only if none fits is one generated on the spot. Ordinary
+  *boards are made with no safe square at all, and each is only ever tried once, as it lies: one with a mine
+  *under the click is thrown away. The board dealt is then exactly as random as one made for the click.
+  *Flipping it to fit would not be, as the mine under the click would end up on a square mirroring it.
+  */
+public class BoardPool
+{
+   /**The number of boards kept ready for each size. */
+   private static final int POOL_SIZE = 8;
+
+   /**The number of custom sizes remembered. */
+   private static final int MAX_CUSTOM = 4;
+
+   /**The time taken to generate each board on a single thread, whether in the background or not. */
+   private static final Metrics.Histogram GENERATE_TIME = Metrics.histogram("generate.nanos");
+
+   /**The thread which fills the pools in the background. */
+   private static final ExecutorService FILLER =
+         Executors.newSingleThreadExecutor(new DaemonThreads("board pool filler"));
+
+   /**The pools for the sizes of the preset modes, which are never forgotten. */
+   private static final Map<String, Pool> PRESETS = new HashMap<String, Pool>();
+
+   /**The pools for the most recently used custom sizes, least recently used first. */
+   private static final Map<String, Pool> CUSTOM = new LinkedHashMap<String, Pool>(16, 0.75f, true)
+      {
+         protected boolean removeEldestEntry(Map.Entry<String, Pool> eldest)
+         {
+            return size() > MAX_CUSTOM;
+         }
+      };
+
+   /**This class is not meant to be instantiated. */
+   private BoardPool() {}
+
+   /**Deals a board which can be started from the given square, and tops the pool back up in the background.
+     *
+     *@param height The height of the board
+     *@param width The width of the board
+     *@param numMines The number of mines on the board
+     *@param noGuess Whether or not the board must be solvable without guessing
+     *@param square The index of the first square clicked
+     *@return the layout of the board
+     */
+   public static Layout deal(int height, int width, int numMines, boolean noGuess, int square)
+   {
+      Pool pool = poolFor(height, width, numMines, noGuess);
+      Layout layout = pool.take(square);
+      if (layout == null)
+      {
+         layout = pool.generate(square);
+      }
+      pool.refill();
+      return layout;
+   }
+
+   /**Starts filling the pool for a size in the background, so that its first game need not wait.
+     *
+     *@param height The height of the boards
+     *@param width The width of the boards
+     *@param numMines The number of mines on the boards
+     *@param noGuess Whether or not the boards must be solvable without guessing
+     */
+   public static void warmUp(int height, int width, int numMines, boolean noGuess)
+   {
+      poolFor(height, width, numMines, noGuess).refill();
+   }
+
+   /**Returns the pool for a size, creating it if needed. */
+   private static Pool poolFor(int height, int width, int numMines, boolean noGuess)
+   {
+      String key = height + "x" + width + "/" + numMines + (noGuess ? " no guess" : "");
+      boolean preset = false;
+      for (NatsMinesweeper.Mode mode : NatsMinesweeper.Mode.values())
+      {
+         preset |= mode.getHeight() == height && mode.getWidth() == width && mode.getMines() == numMines;
+      }
+      Map<String, Pool> pools = preset ? PRESETS : CUSTOM;
+      synchronized (pools)
+      {
+         Pool pool = pools.get(key);
+         if (pool == null)
+         {
+            pool = new Pool(height, width, numMines, noGuess);
+            pools.put(key, pool);
+         }
+         return pool;
+      }
+   }
+
+   /**The boards kept ready for one size. */
+   private static class Pool
+   {
+      private final int height;
+      private final int width;
+      private final int numMines;
+      private final boolean noGuess;
+
+      /**The boards ready to be dealt. */
+      private final BlockingDeque<Layout> ready = new LinkedBlockingDeque<Layout>(POOL_SIZE);
+
+      /**The number of boards being generated for this pool. */
+      private final AtomicInteger filling = new AtomicInteger();
+
+      Pool(int height, int width, int numMines, boolean noGuess)
+      {
+         this.height = height;
+         this.width = width;
+         this.numMines = numMines;
+         this.noGuess = noGuess;
+      }
+
+      /**Takes a ready board which can be started from the given square. No-guess boards may be flipped or
+        *turned to fit; ordinary boards are thrown away until one is safe at the square. When no no-guess
+        *board fits, the oldest is thrown away.
+        *
+        *@param square The index of the first square clicked
+        *@return the layout, or null if none fits
+        */
+      Layout take(int square)
+      {
+         if (!noGuess)
+         {
+            for (Layout layout = ready.poll(); layout != null; layout = ready.poll())
+            {
+               if (layout.opensFrom(square))
+               {
+                  return layout;
+               }
+            }
+            return null;
+         }
+         for (Layout layout : ready)
+         {
+            for (int symmetry = 0; symmetry < layout.getNumSymmetries(); symmetry++)
+            {
+               if (layout.opensFrom(layout.sourceOf(square, symmetry)))
+               {
+                  if (ready.remove(layout)) //Otherwise another thread got it first.
+                  {
+                     return layout.transform(symmetry);
+                  }
+                  break;
+               }
+            }
+         }
+         ready.poll(); //The oldest makes way for a new board, so that boards which fit no click the player
+         return null;  //makes, such as one who always starts in a corner, cannot fill the pool for good.
+      }
+
+      /**Generates a board on the spot, racing no-guess candidates on every core. If no no-guess board can
+        *be found in time, an ordinary one is dealt instead, rather than keeping the player waiting.
+        *
+        *@param start The index of the first square clicked
+        *@return the layout
+        */
+      Layout generate(int start)
+      {
+         if (noGuess)
+         {
+            try
+            {
+               return new NoGuessGenerator(height, width, numMines).generate(start);
+            }
+            catch (IllegalStateException e)
+            {
+               return ordinary(start, new SplittableRandom());
+            }
+         }
+         return generate(start, new SplittableRandom());
+      }
+
+      /**Generates a board on the current thread.
+        *
+        *@param start The index of the first square, which must be safe, or -1 for none
+        *@param random The source of randomness
+        *@return the layout
+        */
+      Layout generate(int start, SplittableRandom random)
+      {
+         long began = Metrics.start();
+         Layout layout;
+         if (noGuess)
+         {
+            layout = new NoGuessGenerator(height, width, numMines).generate(start, random);
+         }
+         else
+         {
+            layout = ordinary(start, random);
+         }
+         GENERATE_TIME.stop(began);
+         return layout;
+      }
+
+      /**Generates a board with its mines anywhere but the first square.
+        *
+        *@param start The index of the first square, or -1 for none
+        *@param random The source of randomness
+        *@return the layout
+        */
+      private Layout ordinary(int start, SplittableRandom random)
+      {
+         Board board = new Board(height, width, numMines);
+         board.setRandom(random);
+         board.placeMines(start);
+         return new Layout(height, width, start, board.getMines(), null);
+      }
+
+      /**Tops the pool up in the background. No-guess boards are made from first squares spread evenly
+        *over the board, and ordinary boards without any safe square.
+        */
+      void refill()
+      {
+         while (ready.size() + filling.get() < POOL_SIZE)
+         {
+            filling.incrementAndGet();
+            FILLER.execute(() ->
+               {
+                  try
+                  {
+                     SplittableRandom random = new SplittableRandom();
+                     ready.offer(generate(noGuess ? random.nextInt(height * width) : -1, random));
+                  }
+                  catch (IllegalStateException e)
+                  {
+                     //No no-guess board was found this time. The next deal asks for another.
+                  }
+                  finally
+                  {
+                     filling.decrementAndGet();
+                  }
+               });
+         }
+      }
+   }
+}
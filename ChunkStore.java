@@ -0,0 +1,213 @@
+import java.io.*; //For Closeable and IOException
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*; //For DirectoryStream, Files, Path and StandardOpenOption
+import java.util.*; //For LinkedHashMap and Map
+
+/**Keeps the revealed and flagged squares of chunks of an endless board on disk, so that only the chunks
+  *near the player need to be in memory. Chunks are grouped into region files of 32 by 32 chunks. Each file
+  *starts with one bit per chunk saying whether it has been saved, followed by a fixed slot of 1 KB per
+  *chunk: its revealed bits, then its flagged bits, one 8 byte row at a time. Slots never written take no
+  *space on most file systems, and no index is kept in memory, so the store costs the same however many
+  *chunks it holds.
+  */
+public class ChunkStore implements Closeable
+{
+   /**The number of chunks along each side of a region. */
+   private static final int REGION_SIZE = 32;
+
+   /**The number of bytes of presence bits at the start of each region file. */
+   private static final int HEADER_SIZE = REGION_SIZE * REGION_SIZE / 8;
+
+   /**The number of rows of a chunk. */
+   private static final int ROWS = 64;
+
+   /**The number of bytes saved for each chunk. */
+   private static final int SLOT_SIZE = 2 * ROWS * 8;
+
+   /**The number of region files kept open at once. */
+   private static final int MAX_OPEN = 16;
+
+   /**The directory holding the region files. */
+   private final Path directory;
+
+   /**Whether or not the directory is deleted when the store is closed. */
+   private final boolean temporary;
+
+   /**The open region files, least recently used first. The oldest is closed when there are too many. */
+   private final Map<Long, FileChannel> open = new LinkedHashMap<Long, FileChannel>(16, 0.75f, true)
+      {
+         protected boolean removeEldestEntry(Map.Entry<Long, FileChannel> eldest)
+         {
+            if (size() <= MAX_OPEN) {return false;}
+            try
+            {
+               eldest.getValue().close();
+            }
+            catch (IOException e)
+            {
+               //Nothing is lost, as every write has already been made.
+            }
+            return true;
+         }
+      };
+
+   /**One chunk's slot, reused for every read and write. */
+   private final ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+
+   /**Opens a store in the given directory, creating it if needed.
+     *
+     *@param directory The directory
+     *@throws IOException if the directory cannot be created
+     */
+   public ChunkStore(Path directory) throws IOException
+   {
+      this(Files.createDirectories(directory), false);
+   }
+
+   private ChunkStore(Path directory, boolean temporary)
+   {
+      this.directory = directory;
+      this.temporary = temporary;
+   }
+
+   /**Opens a store in a new temporary directory, deleted when the store is closed.
+     *
+     *@return the store
+     *@throws IOException if the directory cannot be created
+     */
+   public static ChunkStore temporary() throws IOException
+   {
+      return new ChunkStore(Files.createTempDirectory("minesweeper-endless"), true);
+   }
+
+   /**Reads a chunk back, if it has been saved.
+     *
+     *@param chunkRow The row of the chunk
+     *@param chunkCol The column of the chunk
+     *@param revealed Filled with one long per row of the chunk's revealed squares
+     *@param flagged Filled with one long per row of the chunk's flagged squares
+     *@return whether or not the chunk had been saved; if not, the arrays are left as they were
+     *@throws IOException if the store cannot be read
+     */
+   public boolean load(int chunkRow, int chunkCol, long[] revealed, long[] flagged) throws IOException
+   {
+      FileChannel region = region(chunkRow, chunkCol);
+      int index = slotIndex(chunkRow, chunkCol);
+      ByteBuffer header = ByteBuffer.allocate(1);
+      if (region.read(header, index >>> 3) <= 0 || (header.get(0) >>> (index & 7) & 1) == 0)
+      {
+         return false;
+      }
+      slot.clear();
+      while (slot.hasRemaining() && region.read(slot, HEADER_SIZE + (long) index * SLOT_SIZE + slot.position()) > 0) {}
+      slot.flip();
+      for (int row = 0; row < ROWS; row++)
+      {
+         revealed[row] = slot.getLong();
+      }
+      for (int row = 0; row < ROWS; row++)
+      {
+         flagged[row] = slot.getLong();
+      }
+      return true;
+   }
+
+   /**Saves a chunk, replacing anything saved for it before.
+     *
+     *@param chunkRow The row of the chunk
+     *@param chunkCol The column of the chunk
+     *@param revealed One long per row of the chunk's revealed squares
+     *@param flagged One long per row of the chunk's flagged squares
+     *@throws IOException if the store cannot be written
+     */
+   public void save(int chunkRow, int chunkCol, long[] revealed, long[] flagged) throws IOException
+   {
+      FileChannel region = region(chunkRow, chunkCol);
+      int index = slotIndex(chunkRow, chunkCol);
+      slot.clear();
+      for (int row = 0; row < ROWS; row++)
+      {
+         slot.putLong(revealed[row]);
+      }
+      for (int row = 0; row < ROWS; row++)
+      {
+         slot.putLong(flagged[row]);
+      }
+      slot.flip();
+      while (slot.hasRemaining())
+      {
+         region.write(slot, HEADER_SIZE + (long) index * SLOT_SIZE + slot.position());
+      }
+      ByteBuffer header = ByteBuffer.allocate(1);
+      region.read(header, index >>> 3); //Reads nothing past the end of a new file, leaving the byte 0.
+      header.put(0, (byte) (header.get(0) | 1 << (index & 7)));
+      header.clear();
+      region.write(header, index >>> 3);
+   }
+
+   /**Forgets every chunk, deleting the region files.
+     *
+     *@throws IOException if they cannot be deleted
+     */
+   public void clear() throws IOException
+   {
+      closeRegions();
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "r.*.dat"))
+      {
+         for (Path file : files)
+         {
+            Files.delete(file);
+         }
+      }
+   }
+
+   /**Closes the store, deleting it if it is temporary.
+     *
+     *@throws IOException if it cannot be closed or deleted
+     */
+   public void close() throws IOException
+   {
+      if (temporary)
+      {
+         clear();
+         Files.deleteIfExists(directory);
+      }
+      else
+      {
+         closeRegions();
+      }
+   }
+
+   /**Closes every open region file. */
+   private void closeRegions() throws IOException
+   {
+      for (FileChannel region : open.values())
+      {
+         region.close();
+      }
+      open.clear();
+   }
+
+   /**Returns the open region file holding a chunk, opening or creating it if needed. */
+   private FileChannel region(int chunkRow, int chunkCol) throws IOException
+   {
+      int regionRow = Math.floorDiv(chunkRow, REGION_SIZE);
+      int regionCol = Math.floorDiv(chunkCol, REGION_SIZE);
+      Long key = (long) regionRow << 32 | (regionCol & 0xFFFFFFFFL);
+      FileChannel region = open.get(key);
+      if (region == null)
+      {
+         region = FileChannel.open(directory.resolve("r." + regionRow + "." + regionCol + ".dat"),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+         open.put(key, region);
+      }
+      return region;
+   }
+
+   /**Returns the number of a chunk's slot within its region. */
+   private static int slotIndex(int chunkRow, int chunkCol)
+   {
+      return Math.floorMod(chunkRow, REGION_SIZE) * REGION_SIZE + Math.floorMod(chunkCol, REGION_SIZE);
+   }
+}
@@ -0,0 +1,553 @@
+import java.util.*; //For Arrays and SplittableRandom
+
+/**A board for custom sizes far too big to hold in flat arrays, up to Board.MAX_SIZE squares. The board is
+  *cut into chunks of 64 by 64 squares, and a chunk is only created once something needs to know about one
+  *of its squares, so a game costs memory in proportion to the area revealed rather than the size of the board.
+  *
+  *The mines of a chunk are made when the chunk is created, from a seed chosen when the game begins. To keep
+  *the total exact without visiting every chunk, the mines are shared out down a binary tree of ranges of
+  *chunks: each range splits its mines between its two halves as a uniformly random placement would, with
+  *randomness worked out from the seed and the range. The mines of one chunk are then found by following its
+  *path down the tree, without looking at any other chunk.
+  */
+public class ChunkedBoard implements Minefield
+{
+   /**The height and width of a chunk, in squares. One row of a chunk fits in a long. */
+   private static final int CHUNK_SIZE = 64;
+
+   /**Splits where the mines, the empty squares and both parts all number more than this are worked out
+     *from a normal approximation rather than square by square. The difference cannot be seen on a board this big.
+     */
+   private static final int EXACT_SPLIT = 256;
+
+   private final int height;
+   private final int width;
+   private final int numMines;
+
+   /**The number of rows and columns of chunks. */
+   private final int chunkRows;
+   private final int chunkCols;
+
+   /**The chunks, row by row, or null for those not created yet. */
+   private Chunk[] chunks;
+
+   /**The number of chunks created this game. */
+   private int numChunks;
+
+   /**The squares which may not be mines: the first square revealed, and perhaps those around it, in order. */
+   private int[] safe = new int[0];
+
+   /**The seed all of this game's mines are made from. */
+   private long seed;
+
+   /**The source of the seed for each game. */
+   private SplittableRandom random = new SplittableRandom();
+
+   /**Whether or not the first square revealed should always open up, with no mines around it as well. */
+   private boolean safeOpening;
+
+   /**The squares changed by the last move, in the order they changed, also used as the queue of a reveal.
+     *Grows as needed, so it is only as long as the biggest move so far.
+     */
+   private int[] changes = new int[1024];
+
+   /**The number of squares changed by the last move. */
+   private int numChanged;
+
+   /**Holds the neighbors of the square currently being looked at. */
+   private final int[] neighborBuffer = new int[8];
+
+   /**Holds the neighbors of a chorded square while they are being revealed. */
+   private final int[] chordBuffer = new int[8];
+
+   private int numRevealed;
+   private int minesFound;
+   private int flagsPlaced;
+   private boolean started;
+   private boolean gameWon;
+   private boolean gameLost;
+
+   /**A 64 by 64 block of squares. Bit c of row r of each array is the square in that row and column of the chunk. */
+   private static class Chunk
+   {
+      final long[] mines = new long[CHUNK_SIZE];
+      final long[] revealed = new long[CHUNK_SIZE];
+      final long[] flagged = new long[CHUNK_SIZE];
+
+      /**The number of mines around each square, row by row, or null until first needed. */
+      byte[] counts;
+   }
+
+   /**Constructs an empty board. The mines are not made until the first square is revealed.
+     *
+     *@param height The height of the board
+     *@param width The width of the board
+     *@param numMines The number of mines on the board
+     */
+   public ChunkedBoard(int height, int width, int numMines)
+   {
+      if (height < 1 || width < 1 || (long) height * width > Board.MAX_SIZE)
+      {
+         throw new IllegalArgumentException("Invalid board size: " + height + "x" + width);
+      }
+      if (numMines < 0 || numMines >= height * width)
+      {
+         throw new IllegalArgumentException("Invalid number of mines: " + numMines);
+      }
+      this.height = height;
+      this.width = width;
+      this.numMines = numMines;
+      chunkRows = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+      chunkCols = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+      chunks = new Chunk[chunkRows * chunkCols];
+   }
+
+   public int getHeight() {return height;}
+
+   public int getWidth() {return width;}
+
+   public int size() {return height * width;}
+
+   public int getNumMines() {return numMines;}
+
+   public int getNumRevealed() {return numRevealed;}
+
+   public int getMinesLeft() {return numMines - flagsPlaced;}
+
+   public boolean isStarted() {return started;}
+
+   public boolean isWon() {return gameWon;}
+
+   public boolean isLost() {return gameLost;}
+
+   public int getNumChanged() {return numChanged;}
+
+   public int getChanged(int ii) {return changes[ii];}
+
+   /**Returns the number of chunks created this game, each of which takes about 5 KB.
+     *
+     *@return the number of chunks created.
+     */
+   public int getNumChunks() {return numChunks;}
+
+   /**Makes the games on this board be made from fixed seeds, so that the same seed and first square
+     *always give the same board.
+     *
+     *@param seed The seed
+     */
+   public void setSeed(long seed) {random = new SplittableRandom(seed);}
+
+   /**Sets whether or not the first square revealed should always have no mines around it.
+     *
+     *@param safeOpening Whether or not the squares around the first square should also be safe
+     */
+   public void setSafeOpening(boolean safeOpening) {this.safeOpening = safeOpening;}
+
+   public boolean isMine(int square)
+   {
+      if (!started) {return false;}
+      Chunk chunk = chunkAt(square / width, square % width);
+      return (chunk.mines[square / width % CHUNK_SIZE] >>> (square % width) & 1) != 0;
+   }
+
+   public boolean isRevealed(int square)
+   {
+      Chunk chunk = chunks[chunkIndex(square / width, square % width)];
+      return chunk != null && (chunk.revealed[square / width % CHUNK_SIZE] >>> (square % width) & 1) != 0;
+   }
+
+   public boolean isFlagged(int square)
+   {
+      Chunk chunk = chunks[chunkIndex(square / width, square % width)];
+      return chunk != null && (chunk.flagged[square / width % CHUNK_SIZE] >>> (square % width) & 1) != 0;
+   }
+
+   public int getAdjacentMines(int square)
+   {
+      if (!started) {return 0;}
+      int row = square / width;
+      int col = square % width;
+      return countAt(chunkAt(row, col), row, col);
+   }
+
+   public void reveal(int square)
+   {
+      numChanged = 0;
+      if (gameWon || gameLost) {return;}
+      if (!started)
+      {
+         start(square); //The game begins here.
+      }
+      open(square);
+      spread();
+   }
+
+   public void toggleFlag(int square)
+   {
+      numChanged = 0;
+      if (gameWon || gameLost || !started || isRevealed(square)) {return;}
+      int row = square / width;
+      int col = square % width;
+      Chunk chunk = chunkAt(row, col);
+      long bit = 1L << col;
+      chunk.flagged[row % CHUNK_SIZE] ^= bit;
+      boolean nowFlagged = (chunk.flagged[row % CHUNK_SIZE] & bit) != 0;
+      flagsPlaced += nowFlagged ? 1 : -1;
+      if ((chunk.mines[row % CHUNK_SIZE] & bit) != 0)
+      {
+         minesFound += nowFlagged ? 1 : -1;
+      }
+      changed(square);
+      if (flagsPlaced == numMines && minesFound == numMines)
+      {
+         gameWon = true;
+      }
+   }
+
+   public void chord(int square)
+   {
+      numChanged = 0;
+      if (gameWon || gameLost || !isRevealed(square)) {return;}
+      int count = neighbors(square, chordBuffer);
+      int adjacentFlags = 0;
+      for (int ii = 0; ii < count; ii++)
+      {
+         if (isFlagged(chordBuffer[ii]))
+         {
+            adjacentFlags++;
+         }
+      }
+      if (adjacentFlags == getAdjacentMines(square))
+      {
+         for (int ii = 0; ii < count; ii++)
+         {
+            open(chordBuffer[ii]);
+         }
+         spread();
+      }
+   }
+
+   public void forfeit()
+   {
+      numChanged = 0;
+      if (!gameWon)
+      {
+         gameLost = true;
+      }
+   }
+
+   /**Resets the board to its pre-game state, dropping every chunk. */
+   public void reset()
+   {
+      Arrays.fill(chunks, null);
+      numChunks = 0;
+      safe = new int[0];
+      numRevealed = 0;
+      minesFound = 0;
+      flagsPlaced = 0;
+      numChanged = 0;
+      started = false;
+      gameWon = false;
+      gameLost = false;
+   }
+
+   /**Finds all of the squares adjacent to the given one.
+     *
+     *@param square The index of the square
+     *@param neighbors An array of length at least 8 to be filled with the indices of the adjacent squares
+     *@return the number of adjacent squares
+     */
+   public int neighbors(int square, int[] neighbors)
+   {
+      int row = square / width;
+      int col = square % width;
+      int count = 0;
+      for (int ii = 0; ii < GridTopology.NEIGHBOR_ROWS.length; ii++)
+      {
+         int r = row + GridTopology.NEIGHBOR_ROWS[ii];
+         int c = col + GridTopology.NEIGHBOR_COLS[ii];
+         if (r >= 0 && r < height && c >= 0 && c < width)
+         {
+            neighbors[count++] = r * width + c;
+         }
+      }
+      return count;
+   }
+
+   /**Chooses the seed and the safe squares for a new game. */
+   private void start(int square)
+   {
+      seed = random.nextLong();
+      int count = safeOpening ? neighbors(square, neighborBuffer) : 0;
+      if (size() - 1 - count < numMines)
+      {
+         count = 0; //No room for a safe opening, so only the first square is kept safe.
+      }
+      safe = new int[count + 1];
+      safe[0] = square;
+      System.arraycopy(neighborBuffer, 0, safe, 1, count);
+      Arrays.sort(safe);
+      started = true;
+   }
+
+   /**Reveals a single square, if it is neither revealed nor flagged. Revealing a mine loses the game. */
+   private void open(int square)
+   {
+      int row = square / width;
+      int col = square % width;
+      Chunk chunk = chunkAt(row, col);
+      long bit = 1L << col;
+      if (((chunk.revealed[row % CHUNK_SIZE] | chunk.flagged[row % CHUNK_SIZE]) & bit) != 0) {return;}
+      chunk.revealed[row % CHUNK_SIZE] |= bit;
+      changed(square);
+      if ((chunk.mines[row % CHUNK_SIZE] & bit) != 0)
+      {
+         gameLost = true;
+      }
+      else
+      {
+         numRevealed++;
+      }
+   }
+
+   /**Spreads a reveal outwards, breadth first, by the same rules as Board: blank squares reveal everything
+     *around them, and every other safe square reveals any blank squares around it. Works by row and column,
+     *looking up each neighbor's chunk only when it is not the same as the square's own.
+     */
+   private void spread()
+   {
+      int head = 0;
+      while (head < numChanged)
+      {
+         int square = changes[head++];
+         int row = square / width;
+         int col = square - row * width;
+         Chunk chunk = chunkAt(row, col);
+         if ((chunk.mines[row % CHUNK_SIZE] >>> col & 1) != 0) {continue;} //A mine that was just clicked on does not spread.
+         boolean blank = countAt(chunk, row, col) == 0;
+         for (int r = Math.max(0, row - 1); r <= Math.min(height - 1, row + 1); r++)
+         {
+            for (int c = Math.max(0, col - 1); c <= Math.min(width - 1, col + 1); c++)
+            {
+               Chunk next = r / CHUNK_SIZE == row / CHUNK_SIZE && c / CHUNK_SIZE == col / CHUNK_SIZE ? chunk : chunkAt(r, c);
+               int line = r % CHUNK_SIZE;
+               long bit = 1L << c;
+               if (((next.revealed[line] | next.flagged[line]) & bit) == 0 //Also skips the square itself.
+                  && (blank || ((next.mines[line] & bit) == 0 && countAt(next, r, c) == 0)))
+               {
+                  next.revealed[line] |= bit;
+                  numRevealed++;
+                  changed(r * width + c);
+               }
+            }
+         }
+      }
+      if (numRevealed == size() - numMines && !gameLost)
+      {
+         gameWon = true; //The player has revealed every non-mine square, even without flagging mines.
+      }
+   }
+
+   /**Returns the number of mines around a square of a chunk, working them out for the whole chunk if needed. */
+   private int countAt(Chunk chunk, int row, int col)
+   {
+      if (chunk.counts == null)
+      {
+         countMines(chunk, row - row % CHUNK_SIZE, col - col % CHUNK_SIZE);
+      }
+      return chunk.counts[row % CHUNK_SIZE * CHUNK_SIZE + col % CHUNK_SIZE];
+   }
+
+   /**Records that a square was changed by the current move. */
+   private void changed(int square)
+   {
+      if (numChanged == changes.length)
+      {
+         changes = Arrays.copyOf(changes, 2 * numChanged);
+      }
+      changes[numChanged++] = square;
+   }
+
+   /**Returns the index of the chunk holding a square. */
+   private int chunkIndex(int row, int col)
+   {
+      return row / CHUNK_SIZE * chunkCols + col / CHUNK_SIZE;
+   }
+
+   /**Returns the chunk holding a square, creating it and making its mines if needed. */
+   private Chunk chunkAt(int row, int col)
+   {
+      int index = chunkIndex(row, col);
+      Chunk chunk = chunks[index];
+      if (chunk == null)
+      {
+         chunk = new Chunk();
+         chunks[index] = chunk;
+         numChunks++;
+         if (started)
+         {
+            placeMines(chunk, index);
+         }
+      }
+      return chunk;
+   }
+
+   /**Makes the mines of a new chunk: its share of the total, placed by Floyd's algorithm among its squares
+     *that are allowed to be mines.
+     */
+   private void placeMines(Chunk chunk, int index)
+   {
+      int top = index / chunkCols * CHUNK_SIZE;
+      int left = index % chunkCols * CHUNK_SIZE;
+      int rows = Math.min(CHUNK_SIZE, height - top);
+      int cols = Math.min(CHUNK_SIZE, width - left);
+      int[] localSafe = new int[safe.length]; //Positions within the chunk, in order, of its safe squares.
+      int numSafe = 0;
+      for (int square : safe)
+      {
+         int r = square / width - top;
+         int c = square % width - left;
+         if (r >= 0 && r < rows && c >= 0 && c < cols)
+         {
+            localSafe[numSafe++] = r * cols + c;
+         }
+      }
+      Arrays.sort(localSafe, 0, numSafe);
+
+      int share = shareOf(index);
+      SplittableRandom chunkRandom = new SplittableRandom(Simulator.seedFor(seed, index));
+      int n = rows * cols - numSafe;
+      for (int j = n - share; j < n; j++)
+      {
+         int choice = Board.skipSafe(chunkRandom.nextInt(j + 1), localSafe, numSafe);
+         if ((chunk.mines[choice / cols] >>> (choice % cols) & 1) != 0)
+         {
+            choice = Board.skipSafe(j, localSafe, numSafe);
+         }
+         chunk.mines[choice / cols] |= 1L << (choice % cols);
+      }
+   }
+
+   /**Works out how many mines a chunk has, by following its path down the tree of ranges of chunks. */
+   private int shareOf(int index)
+   {
+      int lo = 0;
+      int hi = chunks.length;
+      long mines = numMines;
+      while (hi - lo > 1)
+      {
+         int mid = (lo + hi) >>> 1;
+         long all = allowed(lo, hi);
+         long left = allowed(lo, mid);
+         SplittableRandom split = new SplittableRandom(Simulator.seedFor(Simulator.seedFor(seed, lo), hi));
+         long leftMines = splitMines(split, all, left, mines);
+         if (index < mid)
+         {
+            hi = mid;
+            mines = leftMines;
+         }
+         else
+         {
+            lo = mid;
+            mines -= leftMines;
+         }
+      }
+      return (int) mines;
+   }
+
+   /**Returns the number of squares allowed to be mines in a range of chunks. */
+   private long allowed(int from, int to)
+   {
+      long count = squaresBefore(to) - squaresBefore(from);
+      for (int square : safe)
+      {
+         int chunk = chunkIndex(square / width, square % width);
+         if (chunk >= from && chunk < to)
+         {
+            count--;
+         }
+      }
+      return count;
+   }
+
+   /**Returns the number of squares in the chunks before the given one. */
+   private long squaresBefore(int index)
+   {
+      int chunkRow = index / chunkCols;
+      int chunkCol = index % chunkCols;
+      long above = (long) Math.min(chunkRow * CHUNK_SIZE, height) * width;
+      if (chunkCol == 0) {return above;}
+      return above + (long) Math.min(CHUNK_SIZE, height - chunkRow * CHUNK_SIZE) * chunkCol * CHUNK_SIZE;
+   }
+
+   /**Chooses how many mines, placed uniformly at random among some squares, land in the first part of them.
+     *
+     *@param random The source of randomness
+     *@param total The number of squares
+     *@param part The number of squares in the first part
+     *@param mines The number of mines
+     *@return the number of mines in the first part
+     */
+   static long splitMines(SplittableRandom random, long total, long part, long mines)
+   {
+      long smallest = Math.min(Math.min(mines, total - mines), Math.min(part, total - part));
+      if (smallest > EXACT_SPLIT)
+      {
+         double fraction = (double) part / total;
+         double mean = mines * fraction;
+         double variance = mean * (1 - fraction) * (total - mines) / (total - 1);
+         double z = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+         long count = Math.round(mean + Math.sqrt(variance) * z);
+         return Math.max(Math.max(0, mines - (total - part)), Math.min(Math.min(mines, part), count));
+      }
+      if (Math.min(mines, part) > smallest) //Counts the empty squares, or the other part, instead.
+      {
+         return smallest == total - mines ? part - splitMines(random, total, part, total - mines)
+            : mines - splitMines(random, total, total - part, mines);
+      }
+      long draws = Math.min(mines, part); //Follows each mine (or each square of the part) in turn.
+      long othersLeft = Math.max(mines, part);
+      long totalLeft = total;
+      long hits = 0;
+      for (long ii = 0; ii < draws; ii++)
+      {
+         if (random.nextLong(totalLeft) < othersLeft)
+         {
+            othersLeft--;
+            hits++;
+         }
+         totalLeft--;
+      }
+      return hits;
+   }
+
+   /**Works out the number of mines around every square of a chunk, once, from its own mines and those of
+     *the chunks around it.
+     */
+   private void countMines(Chunk chunk, int top, int left)
+   {
+      byte[] counts = new byte[CHUNK_SIZE * CHUNK_SIZE];
+      int rows = Math.min(CHUNK_SIZE, height - top);
+      int cols = Math.min(CHUNK_SIZE, width - left);
+      for (int r = 0; r < rows; r++)
+      {
+         for (int dr = -1; dr <= 1; dr++)
+         {
+            int row = top + r + dr;
+            if (row < 0 || row >= height) {continue;}
+            long bits = (row >= top && row < top + CHUNK_SIZE ? chunk : chunkAt(row, left)).mines[row % CHUNK_SIZE];
+            long before = left > 0 ? chunkAt(row, left - 1).mines[row % CHUNK_SIZE] >>> (CHUNK_SIZE - 1) : 0;
+            long after = left + CHUNK_SIZE < width ? chunkAt(row, left + CHUNK_SIZE).mines[row % CHUNK_SIZE] & 1 : 0;
+            for (int c = 0; c < cols; c++)
+            {
+               int count = Long.bitCount(bits & (c == 0 ? 3L : 7L << (c - 1))); //The squares in columns c - 1 to c + 1.
+               if (c == 0) {count += (int) before;}
+               if (c == CHUNK_SIZE - 1) {count += (int) after;}
+               if (dr == 0 && (bits >>> c & 1) != 0) {count--;} //A mine is not its own neighbor.
+               counts[r * CHUNK_SIZE + c] += count;
+            }
+         }
+      }
+      chunk.counts = counts;
+   }
+}
@@ -0,0 +1,170 @@
+/**A board in three dimensions: a stack of layers, each a rectangular board, in which each cube touches the
+  *(up to) twenty six cubes around it, in its own layer and the layers above and below. The layers are laid
+  *out one after another, so that the cube at (layer, row, col) has the index (layer * height + row) * width
+  *+ col, and the board as a whole is depth * height rows of width squares.
+  *
+  *As in GridTopology, neighbors are found from tables of index offsets worked out once per board, one for
+  *each combination of the six faces of the board a cube can be on.
+  *
+  *The counts are worked out as the total of the mines in each 3x3x3 block less the mine in the middle, by
+  *adding up neighboring squares along each row, then each column, then each stack of layers, each pass
+  *reading the board in order and keeping only the row or layer it has just overwritten.
+  */
+public class CubeTopology implements Topology
+{
+   /**The largest number of neighbors of any cube. */
+   private static final int MAX_NEIGHBORS = 26;
+
+   //The faces a cube can be on, combined into an index into the tables of offsets.
+   private static final int TOP = 1;
+   private static final int BOTTOM = 2;
+   private static final int LEFT = 4;
+   private static final int RIGHT = 8;
+   private static final int FRONT = 16; //The first layer.
+   private static final int BACK = 32; //The last layer.
+
+   private final int depth;
+   private final int height;
+   private final int width;
+
+   /**The index offsets of the neighbors of a cube, for each combination of faces it is on. */
+   private final int[][] offsets = new int[64][];
+
+   /**Constructs the topology of a board of the given size.
+     *
+     *@param depth The number of layers
+     *@param height The height of each layer
+     *@param width The width of each layer
+     */
+   public CubeTopology(int depth, int height, int width)
+   {
+      if (depth < 1 || height < 1 || width < 1 || (long) depth * height * width > Integer.MAX_VALUE)
+      {
+         throw new IllegalArgumentException("Invalid board size: " + depth + "x" + height + "x" + width);
+      }
+      this.depth = depth;
+      this.height = height;
+      this.width = width;
+      for (int faces = 0; faces < offsets.length; faces++)
+      {
+         int[] table = new int[MAX_NEIGHBORS];
+         int count = 0;
+         for (int layers = -1; layers <= 1; layers++)
+         {
+            for (int rows = -1; rows <= 1; rows++)
+            {
+               for (int cols = -1; cols <= 1; cols++)
+               {
+                  if ((layers == 0 && rows == 0 && cols == 0)
+                     || (layers < 0 && (faces & FRONT) != 0) || (layers > 0 && (faces & BACK) != 0)
+                     || (rows < 0 && (faces & TOP) != 0) || (rows > 0 && (faces & BOTTOM) != 0)
+                     || (cols < 0 && (faces & LEFT) != 0) || (cols > 0 && (faces & RIGHT) != 0))
+                  {
+                     continue;
+                  }
+                  table[count++] = (layers * height + rows) * width + cols;
+               }
+            }
+         }
+         offsets[faces] = java.util.Arrays.copyOf(table, count);
+      }
+   }
+
+   /**Returns the number of layers.
+     *
+     *@return the number of layers.
+     */
+   public int getDepth() {return depth;}
+
+   /**Returns the number of rows in all of the layers together.
+     *
+     *@return the number of rows.
+     */
+   public int getHeight() {return depth * height;}
+
+   public int getWidth() {return width;}
+
+   public int maxNeighbors() {return MAX_NEIGHBORS;}
+
+   public int neighbors(int square, int[] neighbors)
+   {
+      int col = square % width;
+      int rest = square / width;
+      int row = rest % height;
+      int layer = rest / height;
+      int faces = (row == 0 ? TOP : 0) | (row == height - 1 ? BOTTOM : 0)
+         | (col == 0 ? LEFT : 0) | (col == width - 1 ? RIGHT : 0)
+         | (layer == 0 ? FRONT : 0) | (layer == depth - 1 ? BACK : 0);
+      int[] table = offsets[faces];
+      for (int ii = 0; ii < table.length; ii++)
+      {
+         neighbors[ii] = square + table[ii];
+      }
+      return table.length;
+   }
+
+   public void countMines(long[] mines, byte[] counts)
+   {
+      //Each square and the squares beside it.
+      for (int start = 0; start < counts.length; start += width)
+      {
+         int previous = 0;
+         int current = isSet(mines, start);
+         for (int col = 0; col < width; col++)
+         {
+            int next = col + 1 < width ? isSet(mines, start + col + 1) : 0;
+            counts[start + col] = (byte) (previous + current + next);
+            previous = current;
+            current = next;
+         }
+      }
+      //Then those of the rows above and below, within each layer.
+      sumAlong(counts, width, height, new byte[width], new byte[width]);
+      //Then those of the layers in front and behind.
+      sumAlong(counts, height * width, depth, new byte[height * width], new byte[height * width]);
+      //Less the square itself.
+      for (int word = 0; word < mines.length; word++)
+      {
+         for (long bits = mines[word]; bits != 0; bits &= bits - 1)
+         {
+            counts[(word << 6) + Long.numberOfTrailingZeros(bits)]--;
+         }
+      }
+   }
+
+   /**Adds to each stretch of a board the stretches before and after it, in place, where the board is made
+     *of groups of the given number of stretches one after another, and neither end of a group has anything
+     *before or after it.
+     *
+     *@param counts The totals to add up
+     *@param stretch The length of each stretch
+     *@param group The number of stretches in each group
+     *@param last Somewhere to keep the stretch before the current one as it was
+     *@param current Somewhere to keep the current stretch as it was
+     */
+   private static void sumAlong(byte[] counts, int stretch, int group, byte[] last, byte[] current)
+   {
+      for (int start = 0, index = 0; start < counts.length; start += stretch, index++)
+      {
+         boolean first = index % group == 0;
+         boolean end = index % group == group - 1;
+         System.arraycopy(counts, start, current, 0, stretch);
+         for (int ii = 0; ii < stretch; ii++)
+         {
+            int total = current[ii];
+            if (!first) {total += last[ii];}
+            if (!end) {total += counts[start + stretch + ii];}
+            counts[start + ii] = (byte) total;
+         }
+         byte[] swap = last;
+         last = current;
+         current = swap;
+      }
+   }
+
+   /**Returns 1 if the given square's bit is set, or 0 if not. */
+   private static int isSet(long[] bits, int square)
+   {
+      return (int) (bits[square >>> 6] >>> square) & 1;
+   }
+}
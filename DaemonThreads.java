@@ -0,0 +1,31 @@
+import java.util.concurrent.ThreadFactory;
+
+/**Makes daemon threads, so that background work such as dealing boards, writing the journal or serving
+  *games never keeps the program running once its window is closed or its main thread is done.
+  */
+public class DaemonThreads implements ThreadFactory
+{
+   /**The name given to every thread made. */
+   private final String name;
+
+   /**Constructs a new DaemonThreads.
+     *
+     *@param name The name given to the threads
+     */
+   public DaemonThreads(String name)
+   {
+      this.name = name;
+   }
+
+   /**Makes a daemon thread to run the given task.
+     *
+     *@param runnable The task
+     *@return the thread, not yet started
+     */
+   public Thread newThread(Runnable runnable)
+   {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+   }
+}
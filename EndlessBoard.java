@@ -0,0 +1,592 @@
+import java.io.*; //For IOException and UncheckedIOException
+import java.util.*; //For Arrays, Iterator, LinkedHashMap and SplittableRandom
+
+/**A board with no edges, for endless mode. Squares are found by row and column, which may be any int, and
+  *the board is cut into chunks of 64 by 64 squares as in ChunkedBoard.
+  *
+  *The mines of a chunk come only from a hash of the seed and the chunk's row and column, each square being a
+  *mine with a fixed chance, so any chunk can be made again exactly at any time. Only the chunks near the
+  *player are kept in memory: those around the area being looked at, set by setView, and a bounded number of
+  *the most recently used others. The rest are dropped, least recently used first, once they are far from
+  *the view; their revealed and flagged squares are kept in a ChunkStore and read back if the player returns.
+  *
+  *A reveal only spreads through chunks in memory. When it reaches the edge of them, it stops there, and
+  *carries on from that edge when the chunk beyond is next loaded, so a huge blank area opens up a screen at a
+  *time as the player moves rather than all at once. A chunk is only dropped between moves, when every reveal
+  *through it has finished, so the store only ever holds chunks in a settled state.
+  */
+public class EndlessBoard
+{
+   /**The chance of each square being a mine, the same as an Intermediate board. */
+   public static final double DENSITY = 40.0 / 256;
+
+   /**The height and width of a chunk, in squares. One row of a chunk fits in a long. */
+   private static final int CHUNK_SIZE = 64;
+
+   /**The number of chunks kept in memory, besides those around the view. Each takes about 6 KB. */
+   private static final int MAX_RESIDENT = 256;
+
+   /**The number of chunks loaded beyond each side of the view, so that reveals near its edge spread
+     *further than the player can see.
+     */
+   private static final int MARGIN = 1;
+
+   /**The store keeping the chunks not in memory. */
+   private final ChunkStore store;
+
+   /**The chunks in memory, least recently used first, by key. */
+   private final LinkedHashMap<Long, Chunk> resident = new LinkedHashMap<Long, Chunk>(64, 0.75f, true);
+
+   /**The last chunk looked up, which is usually the next one wanted as well. */
+   private Chunk last;
+
+   /**The chunks around the view, which are never dropped, inclusive. */
+   private int viewTop;
+   private int viewLeft;
+   private int viewBottom = -1;
+   private int viewRight = -1;
+
+   /**The seed all of this game's mines are made from. */
+   private long seed;
+
+   /**The source of the seed for each game. */
+   private SplittableRandom random = new SplittableRandom();
+
+   /**The first square revealed, around which there are never mines. */
+   private int startRow;
+   private int startCol;
+
+   /**The squares still to spread from, each with its row in the high half and its column in the low half. */
+   private long[] queue = new long[1024];
+
+   /**The number of squares in the queue. */
+   private int queued;
+
+   private long numRevealed;
+   private long flagsPlaced;
+   private boolean started;
+   private boolean gameLost;
+
+   /**A 64 by 64 block of squares. Bit c of row r of each array is the square in that row and column of the chunk. */
+   private static class Chunk
+   {
+      final int chunkRow;
+      final int chunkCol;
+      final long[] mines = new long[CHUNK_SIZE];
+      final long[] revealed = new long[CHUNK_SIZE];
+      final long[] flagged = new long[CHUNK_SIZE];
+
+      /**The number of mines around each square, row by row. */
+      final byte[] counts = new byte[CHUNK_SIZE * CHUNK_SIZE];
+
+      /**Whether or not anything has been revealed or flagged in this chunk since it was loaded. */
+      boolean dirty;
+
+      Chunk(int chunkRow, int chunkCol)
+      {
+         this.chunkRow = chunkRow;
+         this.chunkCol = chunkCol;
+      }
+   }
+
+   /**Constructs an empty board, keeping chunks which are not in memory in the given store. The mines are not
+     *made until the first square is revealed.
+     *
+     *@param store The store
+     */
+   public EndlessBoard(ChunkStore store)
+   {
+      this.store = store;
+   }
+
+   /**Returns the number of squares revealed so far this game.
+     *
+     *@return the number of squares revealed so far this game.
+     */
+   public long getNumRevealed() {return numRevealed;}
+
+   /**Returns the number of flags placed so far this game.
+     *
+     *@return the number of flags placed so far this game.
+     */
+   public long getFlagsPlaced() {return flagsPlaced;}
+
+   /**Returns whether or not the game has begun.
+     *
+     *@return whether or not the game has begun.
+     */
+   public boolean isStarted() {return started;}
+
+   /**Returns whether or not the game has been lost. An endless game cannot be won.
+     *
+     *@return whether or not the game has been lost.
+     */
+   public boolean isLost() {return gameLost;}
+
+   /**Returns the number of chunks in memory.
+     *
+     *@return the number of chunks in memory.
+     */
+   public int getNumResident() {return resident.size();}
+
+   /**Makes the games on this board be made from fixed seeds, so that the same seed and first square
+     *always give the same board.
+     *
+     *@param seed The seed
+     */
+   public void setSeed(long seed) {random = new SplittableRandom(seed);}
+
+   /**Sets the area the player is looking at, loading the chunks around it and dropping chunks far from it.
+     *Reveals that stopped at the edge of the chunks in memory carry on into the chunks loaded.
+     *
+     *@param top The first row on show
+     *@param left The first column on show
+     *@param bottom The last row on show
+     *@param right The last column on show
+     */
+   public void setView(int top, int left, int bottom, int right)
+   {
+      viewTop = (top >> 6) - MARGIN;
+      viewLeft = (left >> 6) - MARGIN;
+      viewBottom = (bottom >> 6) + MARGIN;
+      viewRight = (right >> 6) + MARGIN;
+      queued = 0;
+      for (int chunkRow = viewTop; chunkRow <= viewBottom; chunkRow++)
+      {
+         for (int chunkCol = viewLeft; chunkCol <= viewRight; chunkCol++)
+         {
+            if (!resident.containsKey(key(chunkRow, chunkCol)))
+            {
+               load(chunkRow, chunkCol);
+            }
+         }
+      }
+      spread();
+      Iterator<Chunk> oldest = resident.values().iterator();
+      while (resident.size() > MAX_RESIDENT && oldest.hasNext())
+      {
+         Chunk chunk = oldest.next();
+         if (!inView(chunk.chunkRow, chunk.chunkCol))
+         {
+            save(chunk);
+            oldest.remove();
+            if (chunk == last) {last = null;}
+         }
+      }
+   }
+
+   /**Returns whether or not the given square is in memory, so that it can be looked at and played.
+     *Every square in the view set by setView is.
+     *
+     *@param row The row of the square
+     *@param col The column of the square
+     *@return whether or not the square is in memory
+     */
+   public boolean isLoaded(int row, int col)
+   {
+      return chunkAt(row, col) != null;
+   }
+
+   /**Returns whether or not the given square is a mine. Always false before the game has begun, or if the
+     *square is not in memory.
+     *
+     *@param row The row of the square
+     *@param col The column of the square
+     *@return whether or not the square is a mine
+     */
+   public boolean isMine(int row, int col)
+   {
+      Chunk chunk = chunkAt(row, col);
+      return started && chunk != null && (chunk.mines[row & (CHUNK_SIZE - 1)] >>> col & 1) != 0;
+   }
+
+   /**Returns whether or not the given square has been revealed. Always false if it is not in memory.
+     *
+     *@param row The row of the square
+     *@param col The column of the square
+     *@return whether or not the square has been revealed
+     */
+   public boolean isRevealed(int row, int col)
+   {
+      Chunk chunk = chunkAt(row, col);
+      return chunk != null && (chunk.revealed[row & (CHUNK_SIZE - 1)] >>> col & 1) != 0;
+   }
+
+   /**Returns whether or not the given square has been flagged. Always false if it is not in memory.
+     *
+     *@param row The row of the square
+     *@param col The column of the square
+     *@return whether or not the square has been flagged
+     */
+   public boolean isFlagged(int row, int col)
+   {
+      Chunk chunk = chunkAt(row, col);
+      return chunk != null && (chunk.flagged[row & (CHUNK_SIZE - 1)] >>> col & 1) != 0;
+   }
+
+   /**Returns the number of mines adjacent to the given square, or 0 if it is not in memory.
+     *
+     *@param row The row of the square
+     *@param col The column of the square
+     *@return the number of adjacent mines
+     */
+   public int getAdjacentMines(int row, int col)
+   {
+      Chunk chunk = chunkAt(row, col);
+      return started && chunk != null ? countAt(chunk, row, col) : 0;
+   }
+
+   /**Reveals the given square, starting the game first if it has not begun, so that the first square revealed
+     *and those around it are never mines. Does nothing if the square is flagged, already revealed or not in
+     *memory, or if the game is over.
+     *
+     *@param row The row of the square
+     *@param col The column of the square
+     */
+   public void reveal(int row, int col)
+   {
+      if (gameLost || !isLoaded(row, col)) {return;}
+      if (!started)
+      {
+         start(row, col); //The game begins here.
+      }
+      queued = 0;
+      open(row, col);
+      spread();
+   }
+
+   /**Flags the given square, or removes the flag if it is already flagged. Does nothing if the square is
+     *revealed or not in memory, if the game has not begun yet, or if the game is over.
+     *
+     *@param row The row of the square
+     *@param col The column of the square
+     */
+   public void toggleFlag(int row, int col)
+   {
+      Chunk chunk = chunkAt(row, col);
+      if (gameLost || !started || chunk == null || isRevealed(row, col)) {return;}
+      long[] flagged = chunk.flagged;
+      flagged[row & (CHUNK_SIZE - 1)] ^= 1L << col;
+      flagsPlaced += (flagged[row & (CHUNK_SIZE - 1)] >>> col & 1) != 0 ? 1 : -1;
+      chunk.dirty = true;
+   }
+
+   /**Reveals everything in memory around the given revealed square, provided that it is already touching its
+     *correct number of flags. Does nothing otherwise.
+     *
+     *@param row The row of the square
+     *@param col The column of the square
+     */
+   public void chord(int row, int col)
+   {
+      if (gameLost || !isRevealed(row, col)) {return;}
+      int adjacentFlags = 0;
+      for (int r = row - 1; r <= row + 1; r++)
+      {
+         for (int c = col - 1; c <= col + 1; c++)
+         {
+            if (isFlagged(r, c))
+            {
+               adjacentFlags++;
+            }
+         }
+      }
+      if (adjacentFlags == getAdjacentMines(row, col))
+      {
+         queued = 0;
+         for (int r = row - 1; r <= row + 1; r++)
+         {
+            for (int c = col - 1; c <= col + 1; c++)
+            {
+               if (isLoaded(r, c))
+               {
+                  open(r, c);
+               }
+            }
+         }
+         spread();
+      }
+   }
+
+   /**Resets the board to its pre-game state, forgetting every chunk, in memory and in the store. The view is kept.
+     *
+     *@throws UncheckedIOException if the store cannot be cleared
+     */
+   public void reset()
+   {
+      resident.clear();
+      last = null;
+      try
+      {
+         store.clear();
+      }
+      catch (IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+      numRevealed = 0;
+      flagsPlaced = 0;
+      started = false;
+      gameLost = false;
+      for (int chunkRow = viewTop; chunkRow <= viewBottom; chunkRow++)
+      {
+         for (int chunkCol = viewLeft; chunkCol <= viewRight; chunkCol++)
+         {
+            load(chunkRow, chunkCol);
+         }
+      }
+   }
+
+   /**Chooses the seed for a new game, and makes the mines of the chunks already in memory, which have none
+     *before the game begins.
+     */
+   private void start(int row, int col)
+   {
+      seed = random.nextLong();
+      startRow = row;
+      startCol = col;
+      started = true;
+      Chunk[] loaded = resident.values().toArray(new Chunk[0]); //Looking chunks up reorders the map.
+      for (Chunk chunk : loaded)
+      {
+         makeMines(chunk.chunkRow, chunk.chunkCol, chunk.mines);
+      }
+      for (Chunk chunk : loaded)
+      {
+         countMines(chunk);
+      }
+   }
+
+   /**Reveals a single square, if it is neither revealed nor flagged, and queues it to spread from.
+     *Revealing a mine loses the game.
+     */
+   private void open(int row, int col)
+   {
+      Chunk chunk = chunkAt(row, col);
+      int line = row & (CHUNK_SIZE - 1);
+      long bit = 1L << col;
+      if (((chunk.revealed[line] | chunk.flagged[line]) & bit) != 0) {return;}
+      chunk.revealed[line] |= bit;
+      chunk.dirty = true;
+      if ((chunk.mines[line] & bit) != 0)
+      {
+         gameLost = true;
+      }
+      else
+      {
+         numRevealed++;
+         enqueue(row, col);
+      }
+   }
+
+   /**Spreads the queued reveals outwards, breadth first, by the same rules as Board: blank squares reveal
+     *everything around them, and every other safe square reveals any blank squares around it. Squares in
+     *chunks not in memory are left for when those chunks are loaded.
+     */
+   private void spread()
+   {
+      for (int head = 0; head < queued; head++)
+      {
+         int row = (int) (queue[head] >> 32);
+         int col = (int) queue[head];
+         Chunk chunk = chunkAt(row, col);
+         boolean blank = countAt(chunk, row, col) == 0;
+         for (int r = row - 1; r <= row + 1; r++)
+         {
+            for (int c = col - 1; c <= col + 1; c++)
+            {
+               Chunk next = r >> 6 == row >> 6 && c >> 6 == col >> 6 ? chunk : chunkAt(r, c);
+               if (next == null) {continue;} //Carried on from when its chunk is loaded.
+               int line = r & (CHUNK_SIZE - 1);
+               long bit = 1L << c;
+               if (((next.revealed[line] | next.flagged[line]) & bit) == 0 //Also skips the square itself.
+                  && (blank || ((next.mines[line] & bit) == 0 && countAt(next, r, c) == 0)))
+               {
+                  next.revealed[line] |= bit;
+                  next.dirty = true;
+                  numRevealed++;
+                  enqueue(r, c);
+               }
+            }
+         }
+      }
+      queued = 0;
+   }
+
+   /**Brings a chunk into memory, making its mines and reading back its squares from the store. Every
+     *revealed safe square along its edge is queued, so that reveals stopped at the edge, in either direction,
+     *carry on once spread is called.
+     */
+   private void load(int chunkRow, int chunkCol)
+   {
+      Chunk chunk = new Chunk(chunkRow, chunkCol);
+      try
+      {
+         store.load(chunkRow, chunkCol, chunk.revealed, chunk.flagged);
+      }
+      catch (IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+      resident.put(key(chunkRow, chunkCol), chunk);
+      if (!started) {return;}
+      makeMines(chunkRow, chunkCol, chunk.mines);
+      countMines(chunk);
+      int top = chunkRow * CHUNK_SIZE;
+      int left = chunkCol * CHUNK_SIZE;
+      queueEdge(top, left, CHUNK_SIZE); //The chunk's own edge,
+      queueEdge(top - 1, left - 1, CHUNK_SIZE + 2); //and the squares just outside it.
+   }
+
+   /**Queues every revealed safe square in memory around the edge of a square block of squares. */
+   private void queueEdge(int top, int left, int size)
+   {
+      int bottom = top + size - 1;
+      int right = left + size - 1;
+      for (int ii = 0; ii < size; ii++)
+      {
+         queueIfOpen(top, left + ii);
+         queueIfOpen(bottom, left + ii);
+         queueIfOpen(top + ii, left);
+         queueIfOpen(top + ii, right);
+      }
+   }
+
+   /**Queues a square if it is a revealed safe square in memory. */
+   private void queueIfOpen(int row, int col)
+   {
+      if (isRevealed(row, col) && !isMine(row, col))
+      {
+         enqueue(row, col);
+      }
+   }
+
+   /**Writes a chunk to the store before it is dropped, if anything in it has changed. */
+   private void save(Chunk chunk)
+   {
+      if (!chunk.dirty) {return;}
+      try
+      {
+         store.save(chunk.chunkRow, chunk.chunkCol, chunk.revealed, chunk.flagged);
+      }
+      catch (IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   /**Makes the mines of a chunk from the seed and the chunk's row and column alone, leaving the first square
+     *revealed and those around it clear.
+     */
+   private void makeMines(int chunkRow, int chunkCol, long[] mines)
+   {
+      SplittableRandom chunkRandom = new SplittableRandom(Simulator.seedFor(Simulator.seedFor(seed, chunkRow), chunkCol));
+      for (int r = 0; r < CHUNK_SIZE; r++)
+      {
+         long bits = 0;
+         for (int c = 0; c < CHUNK_SIZE; c++)
+         {
+            if (chunkRandom.nextDouble() < DENSITY)
+            {
+               bits |= 1L << c;
+            }
+         }
+         mines[r] = bits;
+      }
+      for (int r = startRow - 1; r <= startRow + 1; r++)
+      {
+         for (int c = startCol - 1; c <= startCol + 1; c++)
+         {
+            if (r >> 6 == chunkRow && c >> 6 == chunkCol)
+            {
+               mines[r & (CHUNK_SIZE - 1)] &= ~(1L << c);
+            }
+         }
+      }
+   }
+
+   /**Works out the number of mines around every square of a chunk, from its own mines and those of the
+     *chunks around it, which are made again if they are not in memory.
+     */
+   private void countMines(Chunk chunk)
+   {
+      long[][] around = new long[9][]; //The mines of the chunks around this one, three rows of three.
+      for (int ii = 0; ii < around.length; ii++)
+      {
+         Chunk other = ii == 4 ? chunk : resident.get(key(chunk.chunkRow + ii / 3 - 1, chunk.chunkCol + ii % 3 - 1));
+         if (other != null)
+         {
+            around[ii] = other.mines;
+         }
+         else
+         {
+            around[ii] = new long[CHUNK_SIZE];
+            makeMines(chunk.chunkRow + ii / 3 - 1, chunk.chunkCol + ii % 3 - 1, around[ii]);
+         }
+      }
+      byte[] counts = chunk.counts;
+      Arrays.fill(counts, (byte) 0);
+      for (int r = 0; r < CHUNK_SIZE; r++)
+      {
+         for (int dr = -1; dr <= 1; dr++)
+         {
+            int band = r + dr < 0 ? 0 : r + dr < CHUNK_SIZE ? 3 : 6; //Which row of chunks the row is in.
+            int line = (r + dr) & (CHUNK_SIZE - 1);
+            long bits = around[band + 1][line];
+            long before = around[band][line] >>> (CHUNK_SIZE - 1);
+            long after = around[band + 2][line] & 1;
+            for (int c = 0; c < CHUNK_SIZE; c++)
+            {
+               int count = Long.bitCount(bits & (c == 0 ? 3L : 7L << (c - 1))); //The squares in columns c - 1 to c + 1.
+               if (c == 0) {count += (int) before;}
+               if (c == CHUNK_SIZE - 1) {count += (int) after;}
+               if (dr == 0 && (bits >>> c & 1) != 0) {count--;} //A mine is not its own neighbor.
+               counts[r * CHUNK_SIZE + c] += count;
+            }
+         }
+      }
+   }
+
+   /**Returns the number of mines around a square of a chunk. */
+   private static int countAt(Chunk chunk, int row, int col)
+   {
+      return chunk.counts[(row & (CHUNK_SIZE - 1)) * CHUNK_SIZE + (col & (CHUNK_SIZE - 1))];
+   }
+
+   /**Returns the chunk in memory holding a square, or null if it is not in memory. */
+   private Chunk chunkAt(int row, int col)
+   {
+      if (last != null && last.chunkRow == row >> 6 && last.chunkCol == col >> 6)
+      {
+         return last;
+      }
+      Chunk chunk = resident.get(key(row >> 6, col >> 6));
+      if (chunk != null)
+      {
+         last = chunk;
+      }
+      return chunk;
+   }
+
+   /**Returns whether or not a chunk is one of those around the view. */
+   private boolean inView(int chunkRow, int chunkCol)
+   {
+      return chunkRow >= viewTop && chunkRow <= viewBottom && chunkCol >= viewLeft && chunkCol <= viewRight;
+   }
+
+   /**Adds a square to the queue, growing it if needed. */
+   private void enqueue(int row, int col)
+   {
+      if (queued == queue.length)
+      {
+         queue = Arrays.copyOf(queue, 2 * queued);
+      }
+      queue[queued++] = (long) row << 32 | (col & 0xFFFFFFFFL);
+   }
+
+   /**Returns the key of a chunk in the map of chunks in memory. */
+   private static Long key(int chunkRow, int chunkCol)
+   {
+      return (long) chunkRow << 32 | (chunkCol & 0xFFFFFFFFL);
+   }
+}
@@ -0,0 +1,325 @@
+import java.awt.*; //For BorderLayout, Color, Dimension, Graphics, Point and Rectangle
+import java.awt.image.BufferedImage; //For the pre-drawn images of the squares
+import java.awt.event.*; //For ComponentAdapter, MouseAdapter and MouseWheelEvent
+import java.io.IOException;
+import javax.swing.*; //For JButton, JFrame, JLabel, JPanel and other miscellaneous graphics classes
+
+/**Endless mode: a board with no edges, explored by dragging it around with the mouse or scrolling the wheel
+  *(with shift held to scroll sideways, or control held to zoom). The game goes on until a mine is revealed,
+  *and the score is the number of squares revealed. Only the part of the board near the window is kept in
+  *memory; see EndlessBoard.
+  */
+public class EndlessMinesweeper extends JFrame
+{
+   /**The number of rows and columns of squares on show when the window opens. */
+   private static final int VIEW_ROWS = 40;
+   private static final int VIEW_COLS = 60;
+
+   /**How far, in pixels, the mouse must move with a button held before the press counts as a drag. */
+   private static final int DRAG_THRESHOLD = 4;
+
+   /**The number of squares moved by each notch of the mouse wheel. */
+   private static final int WHEEL_SQUARES = 3;
+
+   /**How far the view may go from the first square, in squares, keeping every square on show within an int. */
+   private static final long MAX_ORIGIN = Integer.MAX_VALUE / 2;
+
+   /**The game board, holding the state of the squares near the view. */
+   private final EndlessBoard board;
+
+   /**The line above the board showing the score. */
+   private final JLabel status = new JLabel();
+
+   /**The panel which draws the part of the board on show. */
+   private final BoardView view;
+
+   /**Constructs the window and starts a game. Exits if the store for the board cannot be made. */
+   public EndlessMinesweeper()
+   {
+      super("Nat's Minesweeper - Endless");
+      ChunkStore store;
+      try
+      {
+         store = ChunkStore.temporary();
+      }
+      catch (IOException e)
+      {
+         JOptionPane.showMessageDialog(null, "Endless mode needs somewhere to keep the board: " + e.getMessage());
+         throw new IllegalStateException("Could not make the chunk store", e);
+      }
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> //Deletes the board from the disk when the window is closed.
+         {
+            try
+            {
+               store.close();
+            }
+            catch (IOException e)
+            {
+               System.out.println("Could not delete the endless board: " + e.getMessage());
+            }
+         }));
+      board = new EndlessBoard(store);
+      view = new BoardView();
+      view.setPreferredSize(new Dimension(VIEW_COLS * view.cellSize, VIEW_ROWS * view.cellSize));
+
+      JButton newGame = new JButton("New Game");
+      newGame.addActionListener(e ->
+         {
+            board.reset();
+            view.centre();
+            updateStatus();
+         });
+      JPanel top = new JPanel(new BorderLayout());
+      top.setBackground(Color.WHITE);
+      top.add(status, BorderLayout.CENTER);
+      top.add(newGame, BorderLayout.EAST);
+      add(top, BorderLayout.NORTH);
+      add(view, BorderLayout.CENTER);
+      updateStatus();
+
+      setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+      pack();
+      setVisible(true);
+   }
+
+   /**Shows the score, and whether or not the game is over. */
+   private void updateStatus()
+   {
+      if (board.isLost())
+      {
+         status.setText(" Boom! " + board.getNumRevealed() + " squares revealed.");
+      }
+      else
+      {
+         status.setText(" Revealed: " + board.getNumRevealed() + "    Flags: " + board.getFlagsPlaced());
+      }
+   }
+
+   /**The part of the board on show. The view is a window onto the board, whose top left corner is at
+     *(originX, originY) in pixels from the top left of the first square, and moves whenever it is dragged.
+     */
+   private class BoardView extends JPanel
+   {
+      /**The side length the squares are shown at, before any scaling up for a high resolution screen. */
+      private int cellSize = Math.max(NatsMinesweeper.MIN_CELL,
+         Math.min(NatsMinesweeper.MAX_CELL, Integer.getInteger("minesweeper.cell", NatsMinesweeper.SQUARE_SIZE)));
+
+      /**The pre-drawn images of the squares, indexed by the image numbers defined in NatsMinesweeper, for the
+        *size the squares were last painted at.
+        */
+      private BufferedImage[] tiles;
+
+      /**The side length of the images in tiles, in pixels on the screen. */
+      private int tilePixels;
+
+      /**The position of the view on the board, in pixels. */
+      private long originX;
+      private long originY;
+
+      /**Where the mouse was last seen while a button is held. */
+      private Point lastPoint;
+
+      /**Whether or not the mouse has moved far enough since it was pressed to be dragging the board. */
+      private boolean dragging;
+
+      /**Constructs the view, with the first square in the middle once it has a size. */
+      BoardView()
+      {
+         MouseAdapter mouse = new MouseAdapter()
+            {
+               public void mousePressed(MouseEvent e)
+               {
+                  lastPoint = e.getPoint();
+                  dragging = false;
+               }
+
+               public void mouseDragged(MouseEvent e)
+               {
+                  if (!dragging && e.getPoint().distance(lastPoint) < DRAG_THRESHOLD) {return;}
+                  dragging = true;
+                  moveBy(lastPoint.x - e.getX(), lastPoint.y - e.getY());
+                  lastPoint = e.getPoint();
+               }
+
+               public void mouseReleased(MouseEvent e) //A press that did not drag the board is a click.
+               {
+                  if (!dragging)
+                  {
+                     clicked(e);
+                  }
+               }
+
+               public void mouseWheelMoved(MouseWheelEvent e)
+               {
+                  int distance = e.getWheelRotation() * WHEEL_SQUARES * cellSize;
+                  if (e.isControlDown())
+                  {
+                     zoom(e.getWheelRotation() < 0 ? NatsMinesweeper.zoomedIn(cellSize)
+                        : NatsMinesweeper.zoomedOut(cellSize), e.getPoint());
+                  }
+                  else if (e.isShiftDown())
+                  {
+                     moveBy(distance, 0);
+                  }
+                  else
+                  {
+                     moveBy(0, distance);
+                  }
+               }
+            };
+         addMouseListener(mouse);
+         addMouseMotionListener(mouse);
+         addMouseWheelListener(mouse);
+         addComponentListener(
+               new ComponentAdapter()
+               {
+                  private boolean shown;
+
+                  public void componentResized(ComponentEvent e)
+                  {
+                     if (!shown) //The first square starts in the middle of the window.
+                     {
+                        shown = true;
+                        centre();
+                     }
+                     else
+                     {
+                        viewMoved();
+                     }
+                  }
+               });
+      }
+
+      /**Moves the view so that the first square is in the middle. */
+      void centre()
+      {
+         originX = -getWidth() / 2;
+         originY = -getHeight() / 2;
+         viewMoved();
+      }
+
+      /**Moves the view by the given number of pixels, as far as the edge of the squares that can be reached. */
+      private void moveBy(long dx, long dy)
+      {
+         originX = Math.max(-MAX_ORIGIN * cellSize, Math.min(MAX_ORIGIN * cellSize, originX + dx));
+         originY = Math.max(-MAX_ORIGIN * cellSize, Math.min(MAX_ORIGIN * cellSize, originY + dy));
+         viewMoved();
+      }
+
+      /**Changes the size the squares are shown at, keeping the square under a point of the view where it was.
+        *
+        *@param size The new side length of the squares
+        *@param anchor The point
+        */
+      private void zoom(int size, Point anchor)
+      {
+         if (size == cellSize) {return;}
+         long x = (originX + anchor.x) * size / cellSize - anchor.x;
+         long y = (originY + anchor.y) * size / cellSize - anchor.y;
+         cellSize = size;
+         moveBy(x - originX, y - originY);
+      }
+
+      /**Tells the board which squares are on show, so that it can load and drop chunks, then redraws them. */
+      private void viewMoved()
+      {
+         board.setView(rowAt(0), colAt(0), rowAt(getHeight() - 1), colAt(getWidth() - 1));
+         repaint();
+      }
+
+      /**Plays the square that was clicked on. */
+      private void clicked(MouseEvent e)
+      {
+         int row = rowAt(e.getY());
+         int col = colAt(e.getX());
+         if (board.isRevealed(row, col)) //Double clicking a revealed square, if it is already touching the correct
+         {                               //number of flags, will reveal everything else around it.
+            if (e.getClickCount() >= 2)
+            {
+               board.chord(row, col);
+            }
+         }
+         else if (e.isControlDown() || SwingUtilities.isRightMouseButton(e)) //right click
+         {
+            board.toggleFlag(row, col);
+         }
+         else //left click
+         {
+            board.reveal(row, col);
+         }
+         updateStatus();
+         repaint();
+      }
+
+      /**Returns the row of the square at a height in the view. */
+      private int rowAt(int y)
+      {
+         return (int) Math.floorDiv(originY + y, cellSize);
+      }
+
+      /**Returns the column of the square at a distance across the view. */
+      private int colAt(int x)
+      {
+         return (int) Math.floorDiv(originX + x, cellSize);
+      }
+
+      /**Paints the squares in view, copying the image for each square into place. The images are drawn at the
+        *size the squares cover on the screen, so that they are sharp on a high resolution screen.
+        *
+        *@param g A graphics object associated with this panel.
+        */
+      public void paintComponent(Graphics g)
+      {
+         int pixels = NatsMinesweeper.pixelsFor(g, cellSize);
+         if (pixels != tilePixels)
+         {
+            tiles = NatsMinesweeper.tilesFor(pixels, getForeground(), getFont());
+            tilePixels = pixels;
+         }
+         Rectangle clip = g.getClipBounds();
+         if (clip == null)
+         {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+         }
+         int firstRow = rowAt(clip.y);
+         int lastRow = rowAt(clip.y + clip.height - 1);
+         int firstCol = colAt(clip.x);
+         int lastCol = colAt(clip.x + clip.width - 1);
+         int size = cellSize;
+         for (int r = firstRow; r <= lastRow; r++)
+         {
+            int y = (int) ((long) r * size - originY);
+            for (int c = firstCol; c <= lastCol; c++)
+            {
+               g.drawImage(tiles[tileFor(r, c)], (int) ((long) c * size - originX), y, size, size, null);
+            }
+         }
+      }
+
+      /**Decides which image to show for a square, as NatsMinesweeper does for a square of a fixed board.
+        *
+        *@param row The row of the square
+        *@param col The column of the square
+        *@return the number of the image to show
+        */
+      private int tileFor(int row, int col)
+      {
+         boolean revealed = board.isRevealed(row, col);
+         boolean flagged = board.isFlagged(row, col);
+         if (!revealed && !board.isLost())
+         {
+            return flagged ? NatsMinesweeper.FLAG : NatsMinesweeper.HIDDEN;
+         }
+         boolean mine = board.isMine(row, col);
+         if (revealed)
+         {
+            return mine ? NatsMinesweeper.HIT_MINE : board.getAdjacentMines(row, col);
+         }
+         if (mine != flagged)
+         {
+            return flagged ? NatsMinesweeper.WRONG_FLAG : NatsMinesweeper.MINE;
+         }
+         return flagged ? NatsMinesweeper.FLAG : NatsMinesweeper.HIDDEN;
+      }
+   }
+}
@@ -0,0 +1,366 @@
+import java.io.*; //For BufferedReader, BufferedWriter, InputStreamReader, IOException and OutputStreamWriter
+import java.net.*; //For InetAddress, ServerSocket and Socket
+import java.nio.charset.StandardCharsets;
+import java.util.*; //For ArrayList, List, Locale and Map
+import java.util.concurrent.*; //For ConcurrentHashMap, ExecutorService and Executors
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**Hosts any number of games at once, without any windows, for programs to play over a socket. Each
+  *connection gets a thread of its own, and each game is locked on its own, so games played on different
+  *connections never wait for each other.
+  *
+  *Commands and replies are lines of text, words separated by spaces, and squares are given by index, equal to
+  *row * width + col. A client may send many commands before reading any replies; the replies come back in
+  *the same order, and are only flushed once there are no more commands waiting.
+  *
+  *  NEW mode | NEW height width mines    OK game height width mines
+  *  REVEAL game square                   OK status changes...
+  *  FLAG game square                     OK status changes...
+  *  CHORD game square                    OK status changes...
+  *  PLAY game move...                    OK status changes...
+  *  STATE game                           OK status squares
+  *  CLOSE game                           OK
+  *  QUIT
+  *
+  *The status is READY, PLAYING, WON or LOST. The changes are runs of squares next to each other in the same
+  *row, as in BoardDiff: each is the first square of the run, a colon, then what each square of the run shows
+  *now, one character each. PLAY makes any number of moves at once, each R, F or C followed by the square,
+  *as in R12 F40 C7, and stops at the first move that ends the game; its changes are those of all of the
+  *moves together, each square once. The squares of STATE are one character each too, in order. A square shows its
+  *number if it is revealed, * if it is a revealed mine, F if it is flagged and - if it is hidden. Anything
+  *that goes wrong gets the reply ERR and a message. Games are closed when the connection which made them is,
+  *and a connection may only have so many games and squares open at once.
+  *
+  *Run with: java GameServer [port]
+  */
+public class GameServer
+{
+   /**The port listened on unless another is given. */
+   public static final int DEFAULT_PORT = 7171;
+
+   /**The largest board a client may ask for. */
+   public static final int MAX_SQUARES = 1 << 24;
+
+   /**The most squares the open games made on one connection may have between them, so that one connection
+     *cannot hold on to more memory than the biggest board takes, however many games it asks for. The memory
+     *of the whole server still grows with the number of connections.
+     */
+   public static final int MAX_CONNECTION_SQUARES = MAX_SQUARES;
+
+   /**The most games one connection may have open at once, however small they are. */
+   public static final int MAX_CONNECTION_GAMES = 1024;
+
+   /**The name sent to clients of each status of a game, indexed by Board.getStatus. */
+   private static final String[] STATUS = {"READY", "PLAYING", "WON", "LOST"};
+
+   /**The moves made, on every connection. */
+   private static final Metrics.Counter MOVES = Metrics.counter("server.moves");
+
+   /**The games started, on every connection. */
+   private static final Metrics.Counter GAMES = Metrics.counter("server.games");
+
+   /**The socket connections are accepted from. */
+   private final ServerSocket server;
+
+   /**The threads serving the connections, one each. */
+   private final ExecutorService connections =
+         Executors.newCachedThreadPool(new DaemonThreads("game server connection"));
+
+   /**Every game being played, by number. */
+   private final Map<Integer, Board> games = new ConcurrentHashMap<Integer, Board>();
+
+   /**The number given to the next game. */
+   private final AtomicInteger nextGame = new AtomicInteger();
+
+   /**Starts listening for connections on the given port of this machine only. Connections are not served
+     *until run is called.
+     *
+     *@param port The port, or 0 for any free port
+     *@throws IOException if the port cannot be listened on
+     */
+   public GameServer(int port) throws IOException
+   {
+      server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+   }
+
+   /**Returns the port being listened on.
+     *
+     *@return the port being listened on.
+     */
+   public int getPort() {return server.getLocalPort();}
+
+   /**Returns the number of games being played.
+     *
+     *@return the number of games being played.
+     */
+   public int getNumGames() {return games.size();}
+
+   /**Accepts connections until the server is closed, serving each on a thread of its own. */
+   public void run()
+   {
+      while (!server.isClosed())
+      {
+         try
+         {
+            Socket socket = server.accept();
+            socket.setTcpNoDelay(true);
+            connections.execute(() -> serve(socket));
+         }
+         catch (IOException e)
+         {
+            if (!server.isClosed())
+            {
+               System.err.println("Could not accept a connection: " + e);
+            }
+         }
+      }
+   }
+
+   /**Stops accepting connections and closes every connection. */
+   public void close()
+   {
+      try
+      {
+         server.close();
+      }
+      catch (IOException e) {} //It is closed either way.
+      connections.shutdownNow();
+   }
+
+   /**Reads commands from one connection and answers them until it is closed or sends QUIT. */
+   private void serve(Socket socket)
+   {
+      List<Integer> made = new ArrayList<Integer>();
+      try (socket;
+         BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+         BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)))
+      {
+         StringBuilder reply = new StringBuilder();
+         String line;
+         while ((line = in.readLine()) != null && !line.trim().equalsIgnoreCase("QUIT"))
+         {
+            reply.setLength(0);
+            try
+            {
+               execute(line.trim().split(" +"), made, reply);
+            }
+            catch (RuntimeException e) //Bad numbers, unknown games and squares off the board.
+            {
+               reply.setLength(0);
+               reply.append("ERR ").append(e.getMessage() == null ? e.toString() : e.getMessage());
+            }
+            out.append(reply).append('\n');
+            if (!in.ready())
+            {
+               out.flush();
+            }
+         }
+      }
+      catch (IOException e) {} //The client went away; its games go with it.
+      finally
+      {
+         for (Integer game : made)
+         {
+            games.remove(game);
+         }
+      }
+   }
+
+   /**Carries out one command.
+     *
+     *@param words The words of the command
+     *@param made The numbers of the games made on this connection, added to by NEW
+     *@param reply Filled with the reply
+     */
+   private void execute(String[] words, List<Integer> made, StringBuilder reply)
+   {
+      String command = words[0].toUpperCase(Locale.ROOT);
+      if (command.equals("NEW"))
+      {
+         if (made.size() >= MAX_CONNECTION_GAMES)
+         {
+            throw new IllegalArgumentException("At most " + MAX_CONNECTION_GAMES + " games may be open at once");
+         }
+         long squares = 0;
+         for (Integer open : made)
+         {
+            Board board = games.get(open);
+            squares += board == null ? 0 : board.size(); //Null if another connection closed it.
+         }
+         Board board = newBoard(words, MAX_CONNECTION_SQUARES - squares);
+         int game = nextGame.getAndIncrement();
+         games.put(game, board);
+         made.add(game);
+         GAMES.increment();
+         reply.append("OK ").append(game).append(' ').append(board.getHeight()).append(' ')
+            .append(board.getWidth()).append(' ').append(board.getNumMines());
+         return;
+      }
+      if (command.equals("REVEAL") || command.equals("FLAG") || command.equals("CHORD"))
+      {
+         checkLength(words, 3);
+         Board board = find(words[1]);
+         int square = Integer.parseInt(words[2]);
+         int kind = command.equals("REVEAL") ? Board.REVEAL : command.equals("FLAG") ? Board.FLAG : Board.CHORD;
+         synchronized (board)
+         {
+            if (square < 0 || square >= board.size())
+            {
+               throw new IllegalArgumentException("No square " + square);
+            }
+            board.apply(Board.move(kind, square));
+            reply.append("OK ").append(STATUS[board.getStatus()]);
+            board.getDiff().appendRuns(reply);
+         }
+         MOVES.increment();
+         return;
+      }
+      if (command.equals("PLAY"))
+      {
+         if (words.length < 2)
+         {
+            throw new IllegalArgumentException("Expected a game and moves to PLAY");
+         }
+         Board board = find(words[1]);
+         int[] moves = new int[words.length - 2];
+         for (int ii = 0; ii < moves.length; ii++)
+         {
+            moves[ii] = parseMove(words[ii + 2], board.size());
+         }
+         synchronized (board)
+         {
+            reply.append("OK ").append(STATUS[board.applyAll(moves, 0, moves.length)]);
+            board.getDiff().appendRuns(reply);
+         }
+         MOVES.add(moves.length);
+         return;
+      }
+      if (command.equals("STATE"))
+      {
+         checkLength(words, 2);
+         Board board = find(words[1]);
+         synchronized (board)
+         {
+            reply.append("OK ").append(STATUS[board.getStatus()]).append(' ');
+            for (int square = 0; square < board.size(); square++)
+            {
+               if (board.isRevealed(square))
+               {
+                  reply.append(BoardDiff.symbolOf(board.isMine(square) ? BoardDiff.MINE : board.getAdjacentMines(square)));
+               }
+               else
+               {
+                  reply.append(board.isFlagged(square) ? 'F' : '-');
+               }
+            }
+         }
+         return;
+      }
+      if (command.equals("CLOSE"))
+      {
+         checkLength(words, 2);
+         Integer game = Integer.valueOf(words[1]);
+         if (games.remove(game) == null)
+         {
+            throw new IllegalArgumentException("No game " + game);
+         }
+         made.remove(game);
+         reply.append("OK");
+         return;
+      }
+      throw new IllegalArgumentException("Unknown command " + words[0]);
+   }
+
+   /**Makes the board asked for by a NEW command, by mode or by size.
+     *
+     *@param words The words of the command
+     *@param room The squares left to the connection before it reaches MAX_CONNECTION_SQUARES
+     *@return the board
+     */
+   private static Board newBoard(String[] words, long room)
+   {
+      int height;
+      int width;
+      int numMines;
+      if (words.length == 2)
+      {
+         NatsMinesweeper.Mode mode = NatsMinesweeper.Mode.valueOf(words[1].toUpperCase(Locale.ROOT));
+         height = mode.getHeight();
+         width = mode.getWidth();
+         numMines = mode.getMines();
+      }
+      else
+      {
+         checkLength(words, 4);
+         height = Integer.parseInt(words[1]);
+         width = Integer.parseInt(words[2]);
+         numMines = Integer.parseInt(words[3]);
+         if ((long) height * width > MAX_SQUARES)
+         {
+            throw new IllegalArgumentException("Boards may have at most " + MAX_SQUARES + " squares");
+         }
+      }
+      if ((long) height * width > room)
+      {
+         throw new IllegalArgumentException("Only " + room + " more squares may be open on this connection");
+      }
+      return new Board(height, width, numMines);
+   }
+
+   /**Reads a move of a PLAY command, such as R12, into a packed move. The square is checked before it is
+     *packed, as squares too big for a packed move would otherwise wrap around onto the board.
+     *
+     *@param word The move
+     *@param size The number of squares on the board
+     *@return the packed move
+     */
+   private static int parseMove(String word, int size)
+   {
+      int kind;
+      switch (Character.toUpperCase(word.charAt(0)))
+      {
+         case 'R': kind = Board.REVEAL; break;
+         case 'F': kind = Board.FLAG; break;
+         case 'C': kind = Board.CHORD; break;
+         default: throw new IllegalArgumentException("Unknown move " + word);
+      }
+      int square = Integer.parseInt(word, 1, word.length(), 10);
+      if (square < 0 || square >= size)
+      {
+         throw new IllegalArgumentException("No square " + square);
+      }
+      return Board.move(kind, square);
+   }
+
+   /**Returns the game with the given number, which must exist. */
+   private Board find(String game)
+   {
+      Board board = games.get(Integer.valueOf(game));
+      if (board == null)
+      {
+         throw new IllegalArgumentException("No game " + game);
+      }
+      return board;
+   }
+
+   /**Throws an IllegalArgumentException unless a command has the given number of words. */
+   private static void checkLength(String[] words, int length)
+   {
+      if (words.length != length)
+      {
+         throw new IllegalArgumentException("Expected " + (length - 1) + " arguments to " + words[0]);
+      }
+   }
+
+   /**Serves games until the program is stopped.
+     *
+     *@param args Optionally the port to listen on, DEFAULT_PORT if not given, or 0 for any free port
+     *@throws IOException if the port cannot be listened on
+     */
+   public static void main(String[] args) throws IOException
+   {
+      GameServer server = new GameServer(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+      System.out.println("Serving games on port " + server.getPort());
+      server.run();
+   }
+}
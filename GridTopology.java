@@ -0,0 +1,192 @@
+import java.lang.invoke.*; //For MethodHandles and VarHandle
+import java.nio.ByteOrder;
+
+/**The usual rectangular board, on which each square touches the (up to) eight squares around it.
+  *
+  *Neighbors are found from tables of index offsets worked out once per board: one table for the squares in
+  *the middle, and one for each combination of edges a square can be on, so finding the neighbors of a square
+  *only needs to know which edges it is on, never to check each neighbor in turn.
+  *
+  *All of the counts are worked out together, 64 squares at a time. Each row of mines is copied into a row
+  *of longs padded with an empty long at each end, with empty rows above the first row and below the last,
+  *so that the squares to the left and right of every square are a shift away, edges or not. The eight
+  *neighbors of each of 64 squares are then added up bit by bit, as a circuit of adders would, and the counts
+  *written out eight at a time.
+  */
+public class GridTopology implements Topology
+{
+   /**The row and column offsets of the eight neighbors of a square, also used by the other square boards. */
+   static final int[] NEIGHBOR_ROWS = {-1, -1, -1, 0, 0, 1, 1, 1};
+   static final int[] NEIGHBOR_COLS = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+   //The edges a square can be on, combined into an index into the tables of offsets.
+   private static final int TOP = 1;
+   private static final int BOTTOM = 2;
+   private static final int LEFT = 4;
+   private static final int RIGHT = 8;
+
+   /**Each byte of entry x holds one bit of x, so that eight one-bit counts can be spread into eight bytes at once. */
+   private static final long[] SPREAD = new long[256];
+
+   /**Writes eight bytes of an array at once. */
+   private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+   static
+   {
+      for (int x = 0; x < SPREAD.length; x++)
+      {
+         for (int bit = 0; bit < 8; bit++)
+         {
+            if ((x >>> bit & 1) != 0)
+            {
+               SPREAD[x] |= 1L << (8 * bit);
+            }
+         }
+      }
+   }
+
+   private final int height;
+   private final int width;
+
+   /**The index offsets of the neighbors of a square, for each combination of edges it is on. */
+   private final int[][] offsets = new int[16][];
+
+   /**Constructs the topology of a board of the given size.
+     *
+     *@param height The height of the board
+     *@param width The width of the board
+     */
+   public GridTopology(int height, int width)
+   {
+      this.height = height;
+      this.width = width;
+      for (int edges = 0; edges < offsets.length; edges++)
+      {
+         int[] table = new int[NEIGHBOR_ROWS.length];
+         int count = 0;
+         for (int ii = 0; ii < NEIGHBOR_ROWS.length; ii++)
+         {
+            if ((NEIGHBOR_ROWS[ii] < 0 && (edges & TOP) != 0) || (NEIGHBOR_ROWS[ii] > 0 && (edges & BOTTOM) != 0)
+               || (NEIGHBOR_COLS[ii] < 0 && (edges & LEFT) != 0) || (NEIGHBOR_COLS[ii] > 0 && (edges & RIGHT) != 0))
+            {
+               continue;
+            }
+            table[count++] = NEIGHBOR_ROWS[ii] * width + NEIGHBOR_COLS[ii];
+         }
+         offsets[edges] = java.util.Arrays.copyOf(table, count);
+      }
+   }
+
+   public int getHeight() {return height;}
+
+   public int getWidth() {return width;}
+
+   public int maxNeighbors() {return NEIGHBOR_ROWS.length;}
+
+   public int neighbors(int square, int[] neighbors)
+   {
+      int row = square / width;
+      int col = square - row * width;
+      int edges = (row == 0 ? TOP : 0) | (row == height - 1 ? BOTTOM : 0)
+         | (col == 0 ? LEFT : 0) | (col == width - 1 ? RIGHT : 0);
+      int[] table = offsets[edges];
+      for (int ii = 0; ii < table.length; ii++)
+      {
+         neighbors[ii] = square + table[ii];
+      }
+      return table.length;
+   }
+
+   public void countMines(long[] mines, byte[] counts)
+   {
+      int words = (width + 63) >>> 6;
+      long[] above = new long[words + 2]; //Row -1, which is empty.
+      long[] middle = new long[words + 2];
+      long[] below = new long[words + 2];
+      loadRow(mines, 0, middle);
+      loadRow(mines, 1, below);
+      for (int row = 0; row < height; row++)
+      {
+         int rowStart = row * width;
+         int rowEnd = rowStart + width;
+         for (int w = 1; w <= words; w++)
+         {
+            //The eight neighbors of each square in this word: three above, two beside and three below.
+            long aboveLeft = above[w] << 1 | above[w - 1] >>> 63;
+            long aboveRight = above[w] >>> 1 | above[w + 1] << 63;
+            long left = middle[w] << 1 | middle[w - 1] >>> 63;
+            long right = middle[w] >>> 1 | middle[w + 1] << 63;
+            long belowLeft = below[w] << 1 | below[w - 1] >>> 63;
+            long belowRight = below[w] >>> 1 | below[w + 1] << 63;
+
+            //Full and half adders, bit by bit, carrying into the next power of two.
+            long aboveSum = aboveLeft ^ above[w] ^ aboveRight;
+            long aboveCarry = (aboveLeft & above[w]) | (aboveRight & (aboveLeft ^ above[w]));
+            long belowSum = belowLeft ^ below[w] ^ belowRight;
+            long belowCarry = (belowLeft & below[w]) | (belowRight & (belowLeft ^ below[w]));
+            long besideSum = left ^ right;
+            long besideCarry = left & right;
+            long ones = aboveSum ^ belowSum ^ besideSum;
+            long onesCarry = (aboveSum & belowSum) | (besideSum & (aboveSum ^ belowSum));
+            long twosPartial = aboveCarry ^ belowCarry ^ besideCarry;
+            long twosCarry = (aboveCarry & belowCarry) | (besideCarry & (aboveCarry ^ belowCarry));
+            long twos = twosPartial ^ onesCarry;
+            long twosCarry2 = twosPartial & onesCarry;
+            long fours = twosCarry ^ twosCarry2;
+            long eights = twosCarry & twosCarry2;
+
+            int base = rowStart + ((w - 1) << 6);
+            for (int shift = 0; shift < 64 && base + shift < rowEnd; shift += 8)
+            {
+               long packed = SPREAD[(int) (ones >>> shift) & 0xFF] | SPREAD[(int) (twos >>> shift) & 0xFF] << 1
+                  | SPREAD[(int) (fours >>> shift) & 0xFF] << 2 | SPREAD[(int) (eights >>> shift) & 0xFF] << 3;
+               int at = base + shift;
+               if (at + 8 <= counts.length) //Any bytes past the end of the row are written again with the next row.
+               {
+                  LONGS.set(counts, at, packed);
+               }
+               else
+               {
+                  for (; at < rowEnd; at++, packed >>>= 8)
+                  {
+                     counts[at] = (byte) packed;
+                  }
+               }
+            }
+         }
+         long[] oldest = above;
+         above = middle;
+         middle = below;
+         below = oldest;
+         loadRow(mines, row + 2, below);
+      }
+   }
+
+   /**Copies one row of a board's bits into a padded row, leaving it empty if the row is off the board. */
+   private void loadRow(long[] bits, int row, long[] padded)
+   {
+      int words = padded.length - 2;
+      if (row >= height)
+      {
+         java.util.Arrays.fill(padded, 0);
+         return;
+      }
+      int start = row * width;
+      for (int w = 0; w < words; w++)
+      {
+         int at = start + (w << 6);
+         int word = at >>> 6;
+         int shift = at & 63;
+         long value = bits[word] >>> shift;
+         if (shift != 0 && word + 1 < bits.length)
+         {
+            value |= bits[word + 1] << (64 - shift);
+         }
+         padded[w + 1] = value;
+      }
+      if ((width & 63) != 0)
+      {
+         padded[words] &= (1L << width) - 1; //Only the squares of this row.
+      }
+   }
+}
@@ -0,0 +1,79 @@
+/**A board of hexagons, each touching (up to) six others. The hexagons are laid out in rows, with every odd
+  *row shifted half a hexagon to the right, so a square touches the squares beside it in its own row and two
+  *squares in each of the rows above and below: the one in the same column, and the one to its left in an
+  *even row or to its right in an odd row.
+  *
+  *As in GridTopology, neighbors are found from tables of index offsets worked out once per board, one for
+  *each combination of edges a square can be on, in even rows and in odd rows.
+  */
+public class HexTopology implements Topology
+{
+   /**The row and column offsets of the six neighbors of a square in an even row. */
+   private static final int[] EVEN_ROWS = {-1, -1, 0, 0, 1, 1};
+   private static final int[] EVEN_COLS = {-1, 0, -1, 1, -1, 0};
+
+   /**The row and column offsets of the six neighbors of a square in an odd row. */
+   private static final int[] ODD_ROWS = {-1, -1, 0, 0, 1, 1};
+   private static final int[] ODD_COLS = {0, 1, -1, 1, 0, 1};
+
+   //The edges a square can be on, combined into an index into the tables of offsets, plus ODD for odd rows.
+   private static final int TOP = 1;
+   private static final int BOTTOM = 2;
+   private static final int LEFT = 4;
+   private static final int RIGHT = 8;
+   private static final int ODD = 16;
+
+   private final int height;
+   private final int width;
+
+   /**The index offsets of the neighbors of a square, for each combination of edges it is on and each kind of row. */
+   private final int[][] offsets = new int[32][];
+
+   /**Constructs the topology of a board of the given size.
+     *
+     *@param height The number of rows of hexagons
+     *@param width The number of hexagons in each row
+     */
+   public HexTopology(int height, int width)
+   {
+      this.height = height;
+      this.width = width;
+      for (int kind = 0; kind < offsets.length; kind++)
+      {
+         int[] rowOffsets = (kind & ODD) != 0 ? ODD_ROWS : EVEN_ROWS;
+         int[] colOffsets = (kind & ODD) != 0 ? ODD_COLS : EVEN_COLS;
+         int[] table = new int[rowOffsets.length];
+         int count = 0;
+         for (int ii = 0; ii < rowOffsets.length; ii++)
+         {
+            if ((rowOffsets[ii] < 0 && (kind & TOP) != 0) || (rowOffsets[ii] > 0 && (kind & BOTTOM) != 0)
+               || (colOffsets[ii] < 0 && (kind & LEFT) != 0) || (colOffsets[ii] > 0 && (kind & RIGHT) != 0))
+            {
+               continue;
+            }
+            table[count++] = rowOffsets[ii] * width + colOffsets[ii];
+         }
+         offsets[kind] = java.util.Arrays.copyOf(table, count);
+      }
+   }
+
+   public int getHeight() {return height;}
+
+   public int getWidth() {return width;}
+
+   public int maxNeighbors() {return EVEN_ROWS.length;}
+
+   public int neighbors(int square, int[] neighbors)
+   {
+      int row = square / width;
+      int col = square - row * width;
+      int kind = (row == 0 ? TOP : 0) | (row == height - 1 ? BOTTOM : 0)
+         | (col == 0 ? LEFT : 0) | (col == width - 1 ? RIGHT : 0) | ((row & 1) != 0 ? ODD : 0);
+      int[] table = offsets[kind];
+      for (int ii = 0; ii < table.length; ii++)
+      {
+         neighbors[ii] = square + table[ii];
+      }
+      return table.length;
+   }
+}
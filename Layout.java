@@ -0,0 +1,216 @@
+import java.util.Arrays;
+
+/**Where the mines are on a board that has not been played yet. A layout may also record its opening: the
+  *squares revealed by clicking its first square, from any of which it can be played. A layout without one
+  *can be started from any square that is not a mine.
+  *
+  *A layout can be flipped and (if the board is square) turned on its side, which gives up to eight different
+  *boards for the price of one.
+  */
+public class Layout
+{
+   /**Flips the board upside down. */
+   public static final int FLIP_ROWS = 1;
+
+   /**Flips the board from left to right. */
+   public static final int FLIP_COLUMNS = 2;
+
+   /**Swaps the rows and columns of the board. Only allowed when it is square. */
+   public static final int TRANSPOSE = 4;
+
+   /**The height of the board. */
+   private final int height;
+
+   /**The width of the board. */
+   private final int width;
+
+   /**The first square the board was made for, or -1 if it was made without one. */
+   private final int start;
+
+   /**The indices of the mines, from lowest to highest. */
+   private final int[] mines;
+
+   /**One bit per square, set for each square revealed by clicking the first square, or null if there is
+     *no opening. Clicking any of them first reveals at least as much as clicking the first square.
+     */
+   private final long[] opening;
+
+   /**Constructs a Layout.
+     *
+     *@param height The height of the board
+     *@param width The width of the board
+     *@param start The first square the board was made for, or -1 if none
+     *@param mines The indices of the mines, which are sorted in place and kept, so must not be changed afterwards
+     *@param opening The squares revealed by clicking the first square, or null if there is no opening
+     */
+   public Layout(int height, int width, int start, int[] mines, long[] opening)
+   {
+      this.height = height;
+      this.width = width;
+      this.start = start;
+      this.mines = mines;
+      Arrays.sort(mines); //Very quick when they are already in order, as they usually are.
+      this.opening = opening;
+   }
+
+   /**Returns the height of the board.
+     *
+     *@return the height of the board.
+     */
+   public int getHeight() {return height;}
+
+   /**Returns the width of the board.
+     *
+     *@return the width of the board.
+     */
+   public int getWidth() {return width;}
+
+   /**Returns the first square the board was made for.
+     *
+     *@return the index of the first square, or -1 if it was made without one.
+     */
+   public int getStart() {return start;}
+
+   /**Returns the number of mines.
+     *
+     *@return the number of mines.
+     */
+   public int getNumMines() {return mines.length;}
+
+   /**Returns the indices of the mines, from lowest to highest. The array must not be changed.
+     *
+     *@return the indices of the mines.
+     */
+   public int[] getMines() {return mines;}
+
+   /**Returns whether or not the board has a recorded opening.
+     *
+     *@return whether or not the board has a recorded opening.
+     */
+   public boolean hasOpening() {return opening != null;}
+
+   /**Returns whether or not a square is a mine.
+     *
+     *@param square The index of the square
+     *@return whether or not the square is a mine
+     */
+   public boolean isMine(int square) {return Arrays.binarySearch(mines, square) >= 0;}
+
+   /**Returns whether or not the board may be started by clicking the given square: it must be in the
+     *opening, if there is one, and must not be a mine.
+     *
+     *@param square The index of the square
+     *@return whether or not the board may be started from the square
+     */
+   public boolean opensFrom(int square)
+   {
+      if (opening != null)
+      {
+         return (opening[square >>> 6] & (1L << square)) != 0;
+      }
+      return !isMine(square);
+   }
+
+   /**Returns the number of symmetries the board has. Every value of the flags below this number (combining
+     *FLIP_ROWS, FLIP_COLUMNS and, for square boards, TRANSPOSE) may be passed to the other methods.
+     *
+     *@return 8 for a square board, otherwise 4
+     */
+   public int getNumSymmetries() {return height == width ? 8 : 4;}
+
+   /**Returns which square of this board ends up at a given square when it is flipped or turned.
+     *
+     *@param square The index of the square on the flipped board
+     *@param symmetry The combination of FLIP_ROWS, FLIP_COLUMNS and TRANSPOSE
+     *@return the index of the square on this board
+     */
+   public int sourceOf(int square, int symmetry)
+   {
+      int row = square / width;
+      int col = square % width;
+      if ((symmetry & FLIP_ROWS) != 0) {row = height - 1 - row;}
+      if ((symmetry & FLIP_COLUMNS) != 0) {col = width - 1 - col;}
+      if ((symmetry & TRANSPOSE) != 0)
+      {
+         int swap = row;
+         row = col;
+         col = swap;
+      }
+      return row * width + col;
+   }
+
+   /**Returns where a square of this board ends up when it is flipped or turned. The opposite of sourceOf.
+     *
+     *@param square The index of the square on this board
+     *@param symmetry The combination of FLIP_ROWS, FLIP_COLUMNS and TRANSPOSE
+     *@return the index of the square on the flipped board
+     */
+   public int targetOf(int square, int symmetry)
+   {
+      int row = square / width;
+      int col = square % width;
+      if ((symmetry & TRANSPOSE) != 0)
+      {
+         int swap = row;
+         row = col;
+         col = swap;
+      }
+      if ((symmetry & FLIP_ROWS) != 0) {row = height - 1 - row;}
+      if ((symmetry & FLIP_COLUMNS) != 0) {col = width - 1 - col;}
+      return row * width + col;
+   }
+
+   /**Returns this layout flipped or turned.
+     *
+     *@param symmetry The combination of FLIP_ROWS, FLIP_COLUMNS and TRANSPOSE
+     *@return the new layout, or this one if symmetry is 0
+     */
+   public Layout transform(int symmetry)
+   {
+      if (symmetry == 0) {return this;}
+      if ((symmetry & TRANSPOSE) != 0 && height != width)
+      {
+         throw new IllegalArgumentException("Only square boards can be transposed");
+      }
+      int[] moved = new int[mines.length];
+      for (int ii = 0; ii < mines.length; ii++)
+      {
+         moved[ii] = targetOf(mines[ii], symmetry);
+      }
+      long[] movedOpening = null;
+      if (opening != null)
+      {
+         movedOpening = new long[opening.length];
+         for (int word = 0; word < opening.length; word++)
+         {
+            for (long bits = opening[word]; bits != 0; bits &= bits - 1)
+            {
+               int square = targetOf(word << 6 | Long.numberOfTrailingZeros(bits), symmetry);
+               movedOpening[square >>> 6] |= 1L << square;
+            }
+         }
+      }
+      return new Layout(height, width, start < 0 ? -1 : targetOf(start, symmetry), moved, movedOpening);
+   }
+
+   /**Returns this layout with a different first square, such as the one a game was actually started from.
+     *
+     *@param square The index of the first square, or -1 for none
+     *@return the new layout, which shares this one's mines and opening
+     */
+   public Layout startingAt(int square) {return new Layout(height, width, square, mines, opening);}
+
+   /**Places this layout's mines on a board of the same size.
+     *
+     *@param board The board, which must not have been started
+     */
+   public void placeOn(Board board)
+   {
+      if (board.getHeight() != height || board.getWidth() != width)
+      {
+         throw new IllegalArgumentException("Layout is " + height + "x" + width + " but the board is "
+            + board.getHeight() + "x" + board.getWidth());
+      }
+      board.placeMines(mines);
+   }
+}
@@ -0,0 +1,188 @@
+import java.io.*; //For BufferedReader, BufferedWriter, InputStreamReader, IOException and OutputStreamWriter
+import java.net.*; //For InetAddress and Socket
+import java.nio.charset.StandardCharsets;
+import java.util.*; //For Arrays and SplittableRandom
+import java.util.concurrent.atomic.LongAdder;
+
+/**Plays as many games as it can on a GameServer, to measure how many moves per second it can serve. Each
+  *connection plays several games at once, sending a move for each of them before reading any of the
+  *replies, and reveals squares at random until each game is over, then starts another.
+  *
+  *Without a port, a server is started in this JVM on any free port.
+  *
+  *Run with: java LoadClient [connections] [seconds] [mode] [port]
+  */
+public class LoadClient
+{
+   /**The number of games each connection plays at once. */
+   private static final int GAMES_PER_CONNECTION = 16;
+
+   /**The time played before anything is counted, so that the compiler has warmed up. */
+   private static final int WARM_UP_SECONDS = 2;
+
+   /**The moves made on every connection, counted once warmed up. */
+   private static final LongAdder MOVES = new LongAdder();
+
+   /**The games finished on every connection, counted once warmed up. */
+   private static final LongAdder GAMES = new LongAdder();
+
+   /**Whether or not the moves are being counted yet. */
+   private static volatile boolean counting;
+
+   /**This class is not meant to be instantiated. */
+   private LoadClient() {}
+
+   /**Plays games on a server for a while, then prints how many moves and games it served per second.
+     *
+     *@param args Optionally the number of connections (one per processor if not given), the seconds to play
+     *            for (10), the mode of every game (HARD), and the port of a server already running
+     *@throws Exception if the server cannot be started or the players are interrupted
+     */
+   public static void main(String[] args) throws Exception
+   {
+      int connections = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+      int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+      String mode = args.length > 2 ? args[2] : "HARD";
+      int port;
+      if (args.length > 3)
+      {
+         port = Integer.parseInt(args[3]);
+      }
+      else
+      {
+         GameServer server = new GameServer(0);
+         new DaemonThreads("game server").newThread(server::run).start();
+         port = server.getPort();
+      }
+
+      Thread[] players = new Thread[connections];
+      long stop = System.nanoTime() + (WARM_UP_SECONDS + seconds) * 1_000_000_000L;
+      for (int ii = 0; ii < connections; ii++)
+      {
+         int seed = ii;
+         players[ii] = new DaemonThreads("load client " + ii).newThread(() -> play(port, mode, stop, seed));
+         players[ii].start();
+      }
+      Thread.sleep(WARM_UP_SECONDS * 1000L);
+      counting = true;
+      long start = System.nanoTime();
+      for (Thread player : players)
+      {
+         player.join();
+      }
+      double elapsed = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%d connections, %d games each, %s: %,.0f moves/sec, %,.0f games/sec%n", connections,
+         GAMES_PER_CONNECTION, mode, MOVES.sum() / elapsed, GAMES.sum() / elapsed);
+   }
+
+   /**Plays games on one connection until the given time. */
+   private static void play(int port, String mode, long stop, long seed)
+   {
+      SplittableRandom random = new SplittableRandom(seed);
+      int[] games = new int[GAMES_PER_CONNECTION];
+      boolean[][] known = new boolean[GAMES_PER_CONNECTION][]; //Each game's revealed squares, or null once over.
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+         BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+         BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)))
+      {
+         socket.setTcpNoDelay(true);
+         for (int ii = 0; ii < GAMES_PER_CONNECTION; ii++)
+         {
+            out.write("NEW " + mode + "\n");
+         }
+         out.flush();
+         for (int ii = 0; ii < GAMES_PER_CONNECTION; ii++)
+         {
+            newGame(in.readLine(), ii, games, known);
+         }
+         while (System.nanoTime() < stop)
+         {
+            for (int ii = 0; ii < GAMES_PER_CONNECTION; ii++)
+            {
+               if (known[ii] == null)
+               {
+                  out.write("CLOSE " + games[ii] + "\nNEW " + mode + "\n");
+               }
+               else
+               {
+                  out.write("REVEAL " + games[ii] + " " + hiddenSquare(known[ii], random) + "\n");
+               }
+            }
+            out.flush();
+            for (int ii = 0; ii < GAMES_PER_CONNECTION; ii++)
+            {
+               if (known[ii] == null)
+               {
+                  check(in.readLine());
+                  newGame(in.readLine(), ii, games, known);
+                  if (counting) {GAMES.increment();}
+               }
+               else
+               {
+                  String reply = check(in.readLine());
+                  readChanges(reply, known[ii]);
+                  if (!reply.startsWith("OK PLAYING"))
+                  {
+                     known[ii] = null;
+                  }
+                  if (counting) {MOVES.increment();}
+               }
+            }
+         }
+         out.write("QUIT\n");
+         out.flush();
+      }
+      catch (IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   /**Records the game started by the reply to a NEW command. */
+   private static void newGame(String reply, int slot, int[] games, boolean[][] known) throws IOException
+   {
+      String[] words = check(reply).split(" ");
+      games[slot] = Integer.parseInt(words[1]);
+      known[slot] = new boolean[Integer.parseInt(words[2]) * Integer.parseInt(words[3])];
+   }
+
+   /**Marks the runs of squares changed by a move as known, reading them from the reply without splitting it up. */
+   private static void readChanges(String reply, boolean[] known)
+   {
+      for (int space = reply.indexOf(' ', 3); space >= 0; )
+      {
+         int colon = reply.indexOf(':', space);
+         int end = reply.indexOf(' ', colon);
+         int square = Integer.parseInt(reply, space + 1, colon, 10);
+         Arrays.fill(known, square, square + (end < 0 ? reply.length() : end) - colon - 1, true);
+         space = end;
+      }
+   }
+
+   /**Returns a random square not yet known to be revealed. */
+   private static int hiddenSquare(boolean[] known, SplittableRandom random)
+   {
+      while (true)
+      {
+         int square = random.nextInt(known.length);
+         if (!known[square])
+         {
+            return square;
+         }
+      }
+   }
+
+   /**Returns a reply, unless it is an error or the connection was closed. */
+   private static String check(String reply) throws IOException
+   {
+      if (reply == null)
+      {
+         throw new EOFException("The server closed the connection");
+      }
+      if (!reply.startsWith("OK"))
+      {
+         throw new IOException(reply);
+      }
+      return reply;
+   }
+}
@@ -0,0 +1,318 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*; //For Files, Path, Paths and StandardOpenOption
+import java.util.*; //For Date, Locale, Map and TreeMap
+import java.util.concurrent.*; //For ConcurrentHashMap, Executors, ScheduledExecutorService and TimeUnit
+import java.util.concurrent.atomic.*; //For AtomicLong, AtomicLongArray and LongAdder
+import javax.management.ObjectName;
+
+/**Counts and times what happens in the game, for seeing how it performs on players' machines. Metrics are
+  *off unless the game is run with -Dminesweeper.metrics, in which case they can be read over JMX as
+  *minesweeper:type=Metrics (with jconsole, for example). With -Dminesweeper.metrics.file=file as well, they
+  *are also appended to that file every ten seconds, or every -Dminesweeper.metrics.period seconds.
+  *
+  *Everything is recorded through counters and histograms held in static fields where they are used. When
+  *metrics are off, ENABLED is a constant false, so the compiler drops every recording and clock read.
+  *
+  *Histograms are log-linear, as in HdrHistogram: values below 16 are counted exactly, and above that each
+  *power of two is split into 16 buckets, so every percentile is within 1/16 of the true value.
+  */
+public class Metrics
+{
+   /**Whether or not metrics are being recorded, fixed when the game starts. */
+   public static final boolean ENABLED = System.getProperty("minesweeper.metrics") != null;
+
+   /**The number of buckets each power of two is split into, as a power of two. */
+   private static final int SUB_BITS = 4;
+
+   /**The number of buckets each power of two is split into. */
+   private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+   /**The number of buckets needed for any positive long. */
+   private static final int NUM_BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+   /**The percentiles reported for each histogram. */
+   private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+   /**Every counter, by name. */
+   private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<String, Counter>();
+
+   /**Every histogram, by name. */
+   private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<String, Histogram>();
+
+   static
+   {
+      if (ENABLED)
+      {
+         publish();
+      }
+   }
+
+   /**This class is not meant to be instantiated. */
+   private Metrics() {}
+
+   /**Returns the counter with the given name, creating it if needed.
+     *
+     *@param name The name, such as games.won
+     *@return the counter
+     */
+   public static Counter counter(String name)
+   {
+      return COUNTERS.computeIfAbsent(name, key -> new Counter());
+   }
+
+   /**Returns the histogram with the given name, creating it if needed.
+     *
+     *@param name The name, ending in the unit of its values, such as reveal.nanos
+     *@return the histogram
+     */
+   public static Histogram histogram(String name)
+   {
+      return HISTOGRAMS.computeIfAbsent(name, key -> new Histogram());
+   }
+
+   /**Returns the time to pass to Histogram.stop once what is being timed is done, or 0 if metrics are off.
+     *
+     *@return the value of System.nanoTime, or 0
+     */
+   public static long start()
+   {
+      return ENABLED ? System.nanoTime() : 0;
+   }
+
+   /**A count of how many times something has happened. */
+   public static class Counter
+   {
+      private final LongAdder count = new LongAdder();
+
+      /**Adds one to the count. */
+      public void increment()
+      {
+         if (ENABLED)
+         {
+            count.increment();
+         }
+      }
+
+      /**Adds some number to the count.
+        *
+        *@param amount The number to add
+        */
+      public void add(long amount)
+      {
+         if (ENABLED)
+         {
+            count.add(amount);
+         }
+      }
+
+      /**Returns the count.
+        *
+        *@return the count
+        */
+      public long get() {return count.sum();}
+   }
+
+   /**The spread of a set of values, such as times in nanoseconds or the sizes of reveals. */
+   public static class Histogram
+   {
+      private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+      private final LongAdder count = new LongAdder();
+      private final LongAdder total = new LongAdder();
+      private final AtomicLong max = new AtomicLong();
+
+      /**Records a value. Negative values are recorded as 0.
+        *
+        *@param value The value
+        */
+      public void record(long value)
+      {
+         if (!ENABLED) {return;}
+         value = Math.max(0, value);
+         buckets.incrementAndGet(bucketOf(value));
+         count.increment();
+         total.add(value);
+         if (value > max.get())
+         {
+            max.accumulateAndGet(value, Math::max);
+         }
+      }
+
+      /**Records the nanoseconds since the given time.
+        *
+        *@param start The time returned by Metrics.start when the timing began
+        */
+      public void stop(long start)
+      {
+         if (ENABLED)
+         {
+            record(System.nanoTime() - start);
+         }
+      }
+
+      /**Returns a summary of the values recorded so far.
+        *
+        *@return the summary
+        */
+      public Summary summarize()
+      {
+         long[] counts = new long[NUM_BUCKETS];
+         long seen = 0;
+         for (int ii = 0; ii < NUM_BUCKETS; ii++)
+         {
+            counts[ii] = buckets.get(ii);
+            seen += counts[ii];
+         }
+         long[] percentiles = new long[PERCENTILES.length];
+         long cumulative = 0;
+         int next = 0;
+         for (int ii = 0; ii < NUM_BUCKETS && next < percentiles.length; ii++)
+         {
+            cumulative += counts[ii];
+            while (next < percentiles.length && seen > 0 && cumulative >= Math.ceil(PERCENTILES[next] * seen))
+            {
+               percentiles[next++] = Math.min(highestIn(ii), max.get());
+            }
+         }
+         return new Summary(seen, seen == 0 ? 0 : (double) total.sum() / count.sum(),
+            percentiles[0], percentiles[1], percentiles[2], max.get());
+      }
+
+      /**Returns the bucket holding a value. */
+      private static int bucketOf(long value)
+      {
+         if (value < SUB_BUCKETS) {return (int) value;}
+         int exponent = 63 - Long.numberOfLeadingZeros(value); //At least SUB_BITS.
+         int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+         return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+      }
+
+      /**Returns the highest value that falls in a bucket. */
+      private static long highestIn(int bucket)
+      {
+         if (bucket < SUB_BUCKETS) {return bucket;}
+         int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+         long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+         return lowest + (1L << (exponent - SUB_BITS)) - 1;
+      }
+   }
+
+   /**A summary of a histogram, as read over JMX. */
+   public static class Summary
+   {
+      private final long count;
+      private final double mean;
+      private final long p50;
+      private final long p90;
+      private final long p99;
+      private final long max;
+
+      Summary(long count, double mean, long p50, long p90, long p99, long max)
+      {
+         this.count = count;
+         this.mean = mean;
+         this.p50 = p50;
+         this.p90 = p90;
+         this.p99 = p99;
+         this.max = max;
+      }
+
+      public long getCount() {return count;}
+
+      public double getMean() {return mean;}
+
+      public long getP50() {return p50;}
+
+      public long getP90() {return p90;}
+
+      public long getP99() {return p99;}
+
+      public long getMax() {return max;}
+
+      public String toString()
+      {
+         return String.format(Locale.ROOT, "count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d", count, mean, p50, p90, p99, max);
+      }
+   }
+
+   /**The metrics as seen over JMX. */
+   public interface MetricsMXBean
+   {
+      /**Returns the value of every counter, by name.
+        *
+        *@return the counters
+        */
+      Map<String, Long> getCounters();
+
+      /**Returns a summary of every histogram, by name.
+        *
+        *@return the histograms
+        */
+      Map<String, Summary> getHistograms();
+   }
+
+   /**Returns the value of every counter, by name, in order of name.
+     *
+     *@return the counters
+     */
+   public static Map<String, Long> counters()
+   {
+      Map<String, Long> values = new TreeMap<String, Long>();
+      COUNTERS.forEach((name, counter) -> values.put(name, counter.get()));
+      return values;
+   }
+
+   /**Returns a summary of every histogram, by name, in order of name.
+     *
+     *@return the histograms
+     */
+   public static Map<String, Summary> histograms()
+   {
+      Map<String, Summary> summaries = new TreeMap<String, Summary>();
+      HISTOGRAMS.forEach((name, histogram) -> summaries.put(name, histogram.summarize()));
+      return summaries;
+   }
+
+   /**Registers the metrics with JMX, and starts writing them to a file if one was given. */
+   private static void publish()
+   {
+      try
+      {
+         MetricsMXBean bean = new MetricsMXBean()
+            {
+               public Map<String, Long> getCounters() {return counters();}
+
+               public Map<String, Summary> getHistograms() {return histograms();}
+            };
+         ManagementFactory.getPlatformMBeanServer().registerMBean(bean, new ObjectName("minesweeper:type=Metrics"));
+      }
+      catch (Exception e) //The game is played all the same.
+      {
+         System.out.println("Could not publish metrics over JMX: " + e.getMessage());
+      }
+      String file = System.getProperty("minesweeper.metrics.file");
+      if (file != null)
+      {
+         long period = Long.getLong("minesweeper.metrics.period", 10);
+         Path path = Paths.get(file);
+         ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(new DaemonThreads("metrics"));
+         dumper.scheduleAtFixedRate(() -> dump(path), period, period, TimeUnit.SECONDS);
+      }
+   }
+
+   /**Appends every metric to a file, under the time they were taken. */
+   private static void dump(Path path)
+   {
+      StringBuilder text = new StringBuilder("# ").append(new Date()).append('\n');
+      counters().forEach((name, value) -> text.append(name).append(' ').append(value).append('\n'));
+      histograms().forEach((name, summary) -> text.append(name).append(' ').append(summary).append('\n'));
+      try
+      {
+         Files.write(path, text.toString().getBytes(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      }
+      catch (IOException e)
+      {
+         System.out.println("Could not write metrics: " + e.getMessage());
+      }
+   }
+}
@@ -0,0 +1,136 @@
+/**A game of minesweeper that can be played and drawn, whatever holds its squares. Board keeps every square
+  *in flat arrays, which is fastest; ChunkedBoard only keeps the parts of the board that have been touched,
+  *for boards far too big for that. Squares are identified by a single index, equal to row * width + col.
+  */
+public interface Minefield
+{
+   /**Returns the height of the board.
+     *
+     *@return the height of the board.
+     */
+   int getHeight();
+
+   /**Returns the width of the board.
+     *
+     *@return the width of the board.
+     */
+   int getWidth();
+
+   /**Returns the number of squares on the board.
+     *
+     *@return the number of squares on the board.
+     */
+   int size();
+
+   /**Returns the total number of mines on the board.
+     *
+     *@return the total number of mines on the board.
+     */
+   int getNumMines();
+
+   /**Returns the number of squares revealed so far this game.
+     *
+     *@return the number of squares revealed so far this game.
+     */
+   int getNumRevealed();
+
+   /**Returns the number of mines left to be found, assuming every flag is correct. May be negative.
+     *
+     *@return the number of mines minus the number of flags.
+     */
+   int getMinesLeft();
+
+   /**Returns whether or not the game has begun (the mines have been placed).
+     *
+     *@return whether or not the game has begun.
+     */
+   boolean isStarted();
+
+   /**Returns whether or not the game has been won.
+     *
+     *@return whether or not the game has been won.
+     */
+   boolean isWon();
+
+   /**Returns whether or not the game has been lost.
+     *
+     *@return whether or not the game has been lost.
+     */
+   boolean isLost();
+
+   /**Returns the index of the square in the given row and column.
+     *
+     *@param row The row of the square
+     *@param col The column of the square
+     *@return the index of the square
+     */
+   default int index(int row, int col) {return row * getWidth() + col;}
+
+   /**Returns whether or not the given square is a mine. Always false before the game has begun.
+     *
+     *@param square The index of the square
+     *@return whether or not the square is a mine
+     */
+   boolean isMine(int square);
+
+   /**Returns whether or not the given square has been revealed.
+     *
+     *@param square The index of the square
+     *@return whether or not the square has been revealed
+     */
+   boolean isRevealed(int square);
+
+   /**Returns whether or not the given square has been flagged.
+     *
+     *@param square The index of the square
+     *@return whether or not the square has been flagged
+     */
+   boolean isFlagged(int square);
+
+   /**Returns the number of mines adjacent to the given square.
+     *
+     *@param square The index of the square
+     *@return the number of adjacent mines
+     */
+   int getAdjacentMines(int square);
+
+   /**Reveals the given square, placing the mines first if the game has not begun yet, so that the first
+     *square revealed is never a mine. Does nothing if the square is flagged or already revealed, or if the game is over.
+     *
+     *@param square The index of the square
+     */
+   void reveal(int square);
+
+   /**Flags the given square, or removes the flag if it is already flagged.
+     *Does nothing if the square is revealed, if the game has not begun yet, or if the game is over.
+     *
+     *@param square The index of the square
+     */
+   void toggleFlag(int square);
+
+   /**Reveals everything around the given revealed square, provided that it is already touching its
+     *correct number of flags. Does nothing otherwise.
+     *
+     *@param square The index of the square
+     */
+   void chord(int square);
+
+   /**Ends the game as a loss, for example when the player runs out of time. */
+   void forfeit();
+
+   /**Resets the board to its pre-game state, ready for new mines. */
+   void reset();
+
+   /**Returns the number of squares changed (revealed, flagged or unflagged) by the last move.
+     *
+     *@return the number of squares changed by the last move.
+     */
+   int getNumChanged();
+
+   /**Returns one of the squares changed by the last move.
+     *
+     *@param ii Which of the changed squares to return, from 0 up to getNumChanged()
+     *@return the index of the changed square
+     */
+   int getChanged(int ii);
+}
@@ -0,0 +1,566 @@
+import java.io.*; //For Closeable and IOException
+import java.nio.*; //For BufferUnderflowException, ByteBuffer and MappedByteBuffer
+import java.nio.channels.FileChannel;
+import java.nio.file.*; //For Path, Paths and StandardOpenOption
+import java.util.*; //For Arrays, Date and Locale
+import java.util.concurrent.*; //For ExecutorService and TimeUnit
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**Logs every move of every game to an append-only binary file, written on a background thread so that the
+  *player never waits for the disk. A Reader maps a journal into memory, finds where each game starts, and
+  *can rebuild the board as it was after any number of moves.
+  *
+  *A journal starts with the four bytes "MSJ1", then holds one record after another. Each record is a byte
+  *saying what it is, followed by:
+  *<ul>
+  *<li>GAME: the height, width and number of mines as varints, then the time it started in milliseconds since 1970 (8 bytes)</li>
+  *<li>DEAL: the milliseconds since the game started as a varint, then the board, in BoardCode's format</li>
+  *<li>REVEAL, FLAG, UNFLAG and CHORD: the milliseconds since the game started, then the square, as varints</li>
+  *<li>RESET: the milliseconds since the game started as a varint</li>
+  *</ul>
+  *Every game starts with a GAME record. Its mines are recorded by a DEAL record just before the move that
+  *placed them. A record cut short by a crash is ignored, along with anything after it.
+  *
+  *Run with: java MoveJournal file [game] [moves] to list the games in a journal, or show one part way through.
+  */
+public class MoveJournal implements Closeable
+{
+   /**A square was revealed. */
+   public static final int REVEAL = 0;
+
+   /**A flag was placed. */
+   public static final int FLAG = 1;
+
+   /**A flag was taken away. */
+   public static final int UNFLAG = 2;
+
+   /**The squares around a number were revealed. */
+   public static final int CHORD = 3;
+
+   /**The game was reset part way through, or after it ended. */
+   public static final int RESET = 4;
+
+   /**A new game was started. */
+   private static final int GAME = 5;
+
+   /**The mines were placed. */
+   private static final int DEAL = 6;
+
+   /**The bytes every journal starts with. */
+   private static final byte[] MAGIC = {'M', 'S', 'J', '1'};
+
+   /**The size of the buffer records are gathered in before being written. */
+   private static final int BUFFER_SIZE = 1 << 16;
+
+   /**The file being written. */
+   private final FileChannel channel;
+
+   /**The thread which encodes and writes the records, in the order they were made. */
+   private final ExecutorService writer = Executors.newSingleThreadExecutor(new DaemonThreads("move journal"));
+
+   /**Records waiting to be written. Only used by the writer thread. */
+   private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+   /**The number of records handed to the writer but not yet encoded. The buffer is written out whenever
+     *this falls to zero, so records are written at once when moves are slow, and in batches when they are fast.
+     */
+   private final AtomicInteger pending = new AtomicInteger();
+
+   /**The time the current game started, from System.nanoTime. Only used by the thread making the moves. */
+   private long gameStart;
+
+   /**The first error met while writing, reported by close. */
+   private volatile IOException failure;
+
+   /**Opens a journal for appending, creating it if it does not exist.
+     *
+     *@param file The journal
+     *@throws IOException if it cannot be opened, or is not a journal
+     */
+   public MoveJournal(Path file) throws IOException
+   {
+      channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      if (channel.size() == 0)
+      {
+         channel.write(ByteBuffer.wrap(MAGIC));
+      }
+      else
+      {
+         checkMagic(channel, file);
+      }
+      channel.position(channel.size());
+   }
+
+   /**Records the start of a new game. Must be called before any of its moves.
+     *
+     *@param height The height of the board
+     *@param width The width of the board
+     *@param numMines The number of mines on the board
+     */
+   public void startGame(int height, int width, int numMines)
+   {
+      gameStart = System.nanoTime();
+      long now = System.currentTimeMillis();
+      submit(out ->
+         {
+            out.put((byte) GAME);
+            BoardCode.writeVarint(out, height);
+            BoardCode.writeVarint(out, width);
+            BoardCode.writeVarint(out, numMines);
+            out.putLong(now);
+         }, 24);
+   }
+
+   /**Records where the mines of the current game are, just before the move that places them.
+     *
+     *@param layout The mines, and the first square clicked
+     */
+   public void deal(Layout layout)
+   {
+      int elapsed = elapsed();
+      submit(out ->
+         {
+            out.put((byte) DEAL);
+            BoardCode.writeVarint(out, elapsed);
+            BoardCode.write(layout, out);
+         }, 6 + BoardCode.maxLength(layout.getHeight(), layout.getWidth()));
+   }
+
+   /**Records a move.
+     *
+     *@param kind REVEAL, FLAG, UNFLAG or CHORD
+     *@param square The index of the square
+     */
+   public void record(int kind, int square)
+   {
+      int elapsed = elapsed();
+      submit(out ->
+         {
+            out.put((byte) kind);
+            BoardCode.writeVarint(out, elapsed);
+            BoardCode.writeVarint(out, square);
+         }, 11);
+   }
+
+   /**Records that the current game was reset. */
+   public void reset()
+   {
+      int elapsed = elapsed();
+      submit(out ->
+         {
+            out.put((byte) RESET);
+            BoardCode.writeVarint(out, elapsed);
+         }, 6);
+   }
+
+   /**Writes everything recorded so far and closes the journal.
+     *
+     *@throws IOException if anything could not be written
+     */
+   public void close() throws IOException
+   {
+      writer.shutdown();
+      try
+      {
+         writer.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+      channel.close();
+      if (failure != null)
+      {
+         throw failure;
+      }
+   }
+
+   /**Returns the number of milliseconds since the current game started. */
+   private int elapsed()
+   {
+      return (int) Math.min(Integer.MAX_VALUE, (System.nanoTime() - gameStart) / 1000000);
+   }
+
+   /**Hands a record to the writer thread.
+     *
+     *@param encode Puts the record in a buffer
+     *@param maxLength The largest number of bytes the record can take
+     */
+   private void submit(Consumer<ByteBuffer> encode, int maxLength)
+   {
+      pending.incrementAndGet();
+      writer.execute(() ->
+         {
+            try
+            {
+               boolean last;
+               try
+               {
+                  if (buffer.remaining() < maxLength)
+                  {
+                     drain(buffer);
+                  }
+                  if (maxLength > BUFFER_SIZE) //Only for enormous boards, so not worth keeping a bigger buffer for.
+                  {
+                     ByteBuffer big = ByteBuffer.allocate(maxLength);
+                     encode.accept(big);
+                     drain(big);
+                  }
+                  else
+                  {
+                     encode.accept(buffer);
+                  }
+               }
+               finally
+               {
+                  last = pending.decrementAndGet() == 0; //Exactly once per record, whatever goes wrong.
+               }
+               if (last)
+               {
+                  drain(buffer);
+               }
+            }
+            catch (IOException e)
+            {
+               if (failure == null)
+               {
+                  failure = e;
+               }
+            }
+         });
+   }
+
+   /**Writes out and empties a buffer. Only called on the writer thread. */
+   private void drain(ByteBuffer records) throws IOException
+   {
+      records.flip();
+      while (records.hasRemaining())
+      {
+         channel.write(records);
+      }
+      records.clear();
+   }
+
+   /**Checks that a file starts like a journal. */
+   private static void checkMagic(FileChannel channel, Path file) throws IOException
+   {
+      ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+      while (start.hasRemaining() && channel.read(start, start.position()) > 0) {}
+      if (!Arrays.equals(start.array(), MAGIC))
+      {
+         throw new IOException(file + " is not a move journal");
+      }
+   }
+
+   /**Reads a journal, mapped into memory. Journals of up to 2 GB can be read, which is millions of games.
+     *Only the records written before it was opened are seen.
+     */
+   public static class Reader implements Closeable
+   {
+      /**The file being read. */
+      private final FileChannel channel;
+
+      /**The whole journal. */
+      private final MappedByteBuffer map;
+
+      /**Where each game's GAME record starts. */
+      private int[] offsets = new int[64];
+
+      /**The number of games. */
+      private int numGames;
+
+      /**Where the last complete record ends. */
+      private int end;
+
+      /**Opens a journal and finds where each game starts.
+        *
+        *@param file The journal
+        *@throws IOException if it cannot be read, or is not a journal
+        */
+      public Reader(Path file) throws IOException
+      {
+         channel = FileChannel.open(file, StandardOpenOption.READ);
+         checkMagic(channel, file);
+         if (channel.size() > Integer.MAX_VALUE)
+         {
+            throw new IOException(file + " is too big to map");
+         }
+         map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         ByteBuffer in = map.duplicate().position(MAGIC.length);
+         end = in.position();
+         try
+         {
+            while (in.hasRemaining())
+            {
+               int start = in.position();
+               if (in.get() == GAME)
+               {
+                  if (numGames == offsets.length)
+                  {
+                     offsets = Arrays.copyOf(offsets, 2 * numGames);
+                  }
+                  offsets[numGames++] = start;
+               }
+               in.position(start);
+               skipRecord(in);
+               end = in.position();
+            }
+         }
+         catch (BufferUnderflowException | IllegalArgumentException e)
+         {
+            //The last record was cut short, so it is ignored.
+         }
+         while (numGames > 0 && offsets[numGames - 1] >= end)
+         {
+            numGames--;
+         }
+      }
+
+      /**Returns the number of games in the journal.
+        *
+        *@return the number of games.
+        */
+      public int getNumGames() {return numGames;}
+
+      /**Returns where a game starts in the journal.
+        *
+        *@param game The number of the game, from 0
+        *@return the offset of its first byte
+        */
+      public long getOffset(int game) {return offsets[game];}
+
+      /**Reads one game, without reading any of the others.
+        *
+        *@param game The number of the game, from 0
+        *@return the game
+        */
+      public Game getGame(int game)
+      {
+         int to = game + 1 < numGames ? offsets[game + 1] : end;
+         ByteBuffer in = map.duplicate().position(offsets[game]).limit(to);
+         return new Game(in);
+      }
+
+      /**Closes the journal.
+        *
+        *@throws IOException if it could not be closed
+        */
+      public void close() throws IOException
+      {
+         channel.close();
+      }
+
+      /**Moves past one record. */
+      private static void skipRecord(ByteBuffer in)
+      {
+         int kind = in.get();
+         switch (kind)
+         {
+            case GAME:
+               BoardCode.readVarint(in);
+               BoardCode.readVarint(in);
+               BoardCode.readVarint(in);
+               in.position(in.position() + 8);
+               break;
+            case DEAL:
+               BoardCode.readVarint(in);
+               BoardCode.skip(in);
+               break;
+            case RESET:
+               BoardCode.readVarint(in);
+               break;
+            case REVEAL: case FLAG: case UNFLAG: case CHORD:
+               BoardCode.readVarint(in);
+               BoardCode.readVarint(in);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown record " + kind);
+         }
+      }
+   }
+
+   /**One game read back from a journal. */
+   public static class Game
+   {
+      private final int height;
+      private final int width;
+      private final int numMines;
+
+      /**When the game started, in milliseconds since 1970. */
+      private final long startTime;
+
+      /**Where the mines were, or null if they were never placed. */
+      private Layout layout;
+
+      /**The number of moves made before the mines were placed. */
+      private int dealtAfter;
+
+      /**The kind of each move, including any RESET. */
+      private int[] kinds = new int[16];
+
+      /**The square of each move. */
+      private int[] squares = new int[16];
+
+      /**When each move was made, in milliseconds after the game started. */
+      private int[] times = new int[16];
+
+      /**The number of moves. */
+      private int numMoves;
+
+      /**Reads a game.
+        *
+        *@param in The game's records, and nothing else
+        */
+      Game(ByteBuffer in)
+      {
+         in.get();
+         height = BoardCode.readVarint(in);
+         width = BoardCode.readVarint(in);
+         numMines = BoardCode.readVarint(in);
+         startTime = in.getLong();
+         while (in.hasRemaining())
+         {
+            int kind = in.get();
+            int time = BoardCode.readVarint(in);
+            if (kind == DEAL)
+            {
+               layout = BoardCode.read(in);
+               dealtAfter = numMoves;
+               continue;
+            }
+            if (numMoves == kinds.length)
+            {
+               kinds = Arrays.copyOf(kinds, 2 * numMoves);
+               squares = Arrays.copyOf(squares, 2 * numMoves);
+               times = Arrays.copyOf(times, 2 * numMoves);
+            }
+            kinds[numMoves] = kind;
+            squares[numMoves] = kind == RESET ? -1 : BoardCode.readVarint(in);
+            times[numMoves] = time;
+            numMoves++;
+         }
+      }
+
+      /**Returns the height of the board.
+        *
+        *@return the height of the board.
+        */
+      public int getHeight() {return height;}
+
+      /**Returns the width of the board.
+        *
+        *@return the width of the board.
+        */
+      public int getWidth() {return width;}
+
+      /**Returns the number of mines on the board.
+        *
+        *@return the number of mines.
+        */
+      public int getNumMines() {return numMines;}
+
+      /**Returns when the game started.
+        *
+        *@return the time in milliseconds since 1970.
+        */
+      public long getStartTime() {return startTime;}
+
+      /**Returns where the mines were.
+        *
+        *@return the layout, or null if the mines were never placed.
+        */
+      public Layout getLayout() {return layout;}
+
+      /**Returns the number of moves recorded, including any RESET.
+        *
+        *@return the number of moves.
+        */
+      public int getNumMoves() {return numMoves;}
+
+      /**Returns the kind of a move.
+        *
+        *@param move The number of the move, from 0
+        *@return REVEAL, FLAG, UNFLAG, CHORD or RESET
+        */
+      public int getKind(int move) {return kinds[move];}
+
+      /**Returns the square of a move.
+        *
+        *@param move The number of the move, from 0
+        *@return the index of the square, or -1 for a RESET
+        */
+      public int getSquare(int move) {return squares[move];}
+
+      /**Returns when a move was made.
+        *
+        *@param move The number of the move, from 0
+        *@return the time in milliseconds after the game started
+        */
+      public int getTime(int move) {return times[move];}
+
+      /**Rebuilds the board as it was after a number of moves.
+        *
+        *@param moves The number of moves to make, from 0 up to getNumMoves()
+        *@return a new board
+        */
+      public Board boardAfter(int moves)
+      {
+         Board board = new Board(height, width, numMines);
+         for (int ii = 0; ii < moves; ii++)
+         {
+            if (ii == dealtAfter && layout != null)
+            {
+               layout.placeOn(board);
+            }
+            switch (kinds[ii])
+            {
+               case REVEAL: board.reveal(squares[ii]); break;
+               case FLAG: case UNFLAG: board.toggleFlag(squares[ii]); break;
+               case CHORD: board.chord(squares[ii]); break;
+               default: board.reset(); break;
+            }
+         }
+         return board;
+      }
+   }
+
+   /**Lists the games in a journal, or prints one of them as it was part way through: # for a hidden square,
+     *F for a flag, * for a mine, and otherwise the number of mines around it.
+     *
+     *@param args The journal file, then optionally the number of a game, then the number of its moves to
+     *            play (all of them if not given)
+     *@throws IOException if the journal cannot be read
+     */
+   public static void main(String[] args) throws IOException
+   {
+      try (Reader reader = new Reader(Paths.get(args[0])))
+      {
+         if (args.length == 1)
+         {
+            for (int ii = 0; ii < reader.getNumGames(); ii++)
+            {
+               Game game = reader.getGame(ii);
+               Board board = game.boardAfter(game.getNumMoves());
+               System.out.printf(Locale.ROOT, "%d: %tF %<tT  %dx%d, %d mines, %d moves, %s%n", ii,
+                  new Date(game.getStartTime()), game.getHeight(), game.getWidth(), game.getNumMines(),
+                  game.getNumMoves(), board.isWon() ? "won" : board.isLost() ? "lost" : "unfinished");
+            }
+            return;
+         }
+         Game game = reader.getGame(Integer.parseInt(args[1]));
+         Board board = game.boardAfter(args.length > 2 ? Integer.parseInt(args[2]) : game.getNumMoves());
+         for (int row = 0; row < board.getHeight(); row++) //# hidden, F flagged, * mine, otherwise the number.
+         {
+            StringBuilder line = new StringBuilder();
+            for (int col = 0; col < board.getWidth(); col++)
+            {
+               int square = board.index(row, col);
+               line.append(board.isFlagged(square) ? 'F' : !board.isRevealed(square) ? '#'
+                  : board.isMine(square) ? '*' : (char) ('0' + board.getAdjacentMines(square)));
+            }
+            System.out.println(line);
+         }
+      }
+   }
+}
@@ -5,9 +5,13 @@
 // Version 1.0
 // 24 May 2012
 
-import java.util.*; //For Scanner, ArrayList, and Timer
-import java.awt.*; //For Color, Graphics, GridLayout, and Font
+import java.util.*; //For Arrays and Scanner
+import java.awt.*; //For Color, Graphics, and Font
+import java.awt.image.BufferedImage; //For the pre-drawn images of the squares
+import java.awt.datatransfer.StringSelection; //For copying board codes
 import java.awt.event.*;//For MouseAdapter
+import java.io.IOException;
+import java.nio.file.Paths;
 import javax.swing.*; //For JFrame, JPanel, and other miscellaneous graphics classes
 
 public class NatsMinesweeper extends JFrame
@@ -21,26 +25,57 @@ public class NatsMinesweeper extends JFrame
    /**The display showing the time elapsed so far this game. */
    private TimerDisplay timerDisplay;
       
-   /**The grid of squares forming the game board */
-   private GameSquare[][] grid;
+   /**The game board, holding the state of every square. */
+   private Minefield board;
       
-   /**The total number of mines on the game board (constant defined by the mode). */ 
-   private int numMines;
+   /**The panel which draws the game board. */
+   private BoardPanel boardPanel;
       
-  	/**The number of squares revealed so far this game. */
-   private int numRevealed;
-      
-	/**Whether or not the game has been won. Cannot be true if gameLost is true. */
-   private boolean gameWon;
-      
-  	/**Whether or not the game has been lost. Cannot be true if gameWon is true. */
-   private boolean gameLost;
-      
-  	/**The number of correctly flagged mines so far. Used to end the game when all have been found */
-   private int minesFound;
+   /**Whether or not every board dealt can be solved without guessing. */
+   private boolean noGuess;
+   
+   /**The shared board played in every game, or null to deal a new board each game. */
+   private Layout replay;
+   
+   /**The board being played and the square it was started from, or null before the first click. */
+   private Layout dealt;
+   
+   /**The journal every move is recorded in, or null if moves are not being recorded. Moves are only
+     *recorded when a file is given with -Dminesweeper.journal=file.
+     */
+   private MoveJournal journal;
+   
+   //What the game records when run with -Dminesweeper.metrics; see Metrics.
+   
+   /**The time taken to reveal a square, including everything opened up by it. */
+   private static final Metrics.Histogram REVEAL_TIME = Metrics.histogram("reveal.nanos");
+   
+   /**The number of squares opened up by revealing a square. */
+   private static final Metrics.Histogram REVEAL_SIZE = Metrics.histogram("reveal.squares");
+   
+   /**The time taken to deal the board and place its mines on the first click. */
+   private static final Metrics.Histogram DEAL_TIME = Metrics.histogram("deal.nanos");
+   
+   /**The time taken to paint the board. */
+   private static final Metrics.Histogram PAINT_TIME = Metrics.histogram("paint.nanos");
+   
+   /**The time from a click to the event dispatch thread handling it. */
+   private static final Metrics.Histogram EVENT_LATENCY = Metrics.histogram("event.latency.millis");
+   
+   /**How late the timer ticks after each whole second. */
+   private static final Metrics.Histogram TIMER_DRIFT = Metrics.histogram("timer.drift.millis");
+   
+   /**The length of each game. */
+   private static final Metrics.Histogram GAME_TIME = Metrics.histogram("game.millis");
+   
+   /**Games won. */
+   private static final Metrics.Counter GAMES_WON = Metrics.counter("games.won");
+   
+   /**Games lost, including those where time ran out. */
+   private static final Metrics.Counter GAMES_LOST = Metrics.counter("games.lost");
    
    /**Defines the three preset difficulty modes of the game. */
-   private enum Mode
+   enum Mode
    {
       EASY (9, 9, 10),
       INTERMEDIATE (16, 16, 40),
@@ -99,8 +134,28 @@ public class NatsMinesweeper extends JFrame
   	/**The width of the margins of the game window. */
    private static final int MARGIN_SIZE = 5;
       
-  	/**The side length of the GameSquares. */
-   private static final int SQUARE_SIZE = 15;
+  	/**The side length the squares of the game board are designed at, and shown at unless another is given
+  	  *with -Dminesweeper.cell=pixels. Everything drawn on a square is scaled from this size.
+  	  */
+   static final int SQUARE_SIZE = 15;
+      
+   /**The smallest side length the squares can be zoomed out to. */
+   static final int MIN_CELL = 6;
+      
+   /**The largest side length the squares can be zoomed in to. */
+   static final int MAX_CELL = 96;
+      
+   /**The number of sets of images of the squares kept, for the last few sizes they were shown at. */
+   private static final int TILE_SETS = 8;
+      
+   /**The sets of images of the squares drawn so far, by size, colors and font, least recently used first. */
+   private static final Map<String, BufferedImage[]> TILE_CACHE = new LinkedHashMap<String, BufferedImage[]>(16, 0.75f, true)
+      {
+         protected boolean removeEldestEntry(Map.Entry<String, BufferedImage[]> eldest)
+         {
+            return size() > TILE_SETS;
+         }
+      };
       
   	/**The height of the two displays (MineCounter and TimerDisplay). */
    private static final int H = 20;
@@ -108,8 +163,17 @@ public class NatsMinesweeper extends JFrame
   	/**The width of the two displays. */
    private static final int W = 40;
       
-   /**The height of the built in title bar of the window. */
-   private static final int TITLE_BAR_HEIGHT = 22;
+   /**The room left around the window for the rest of the screen, such as a task bar, when it is as big as it can be. */
+   private static final int SCREEN_ALLOWANCE = 60;
+   
+   /**The largest height or width of a custom board. */
+   private static final int MAX_SIDE = 30000;
+   
+   /**Boards with more squares than this only keep the parts that have been touched (see ChunkedBoard). */
+   private static final int CHUNKED_SIZE = 1 << 24;
+   
+   /**No-guess boards are only offered up to this many squares, as bigger ones take too long to make. */
+   private static final int MAX_NO_GUESS_SIZE = 10000;
       
    /**The distance text should be shifted to the right so it doesn't begin precisely at the left edge of a panel. */
    private static final int SHIFT = 3;	
@@ -120,6 +184,20 @@ public class NatsMinesweeper extends JFrame
    /**The font size for the numbers on the displays. */
    private static final int FONT_SIZE = 18;
       
+   /**The lowest number the displays keep ready to show, without working out the text again each time. */
+   private static final int MIN_SHOWN = -99;
+      
+   /**The text shown for every number from MIN_SHOWN up to the largest the timer can show. */
+   private static final String[] SHOWN = new String[1000 - MIN_SHOWN];
+      
+   static
+   {
+      for (int ii = 0; ii < SHOWN.length; ii++)
+      {
+         SHOWN[ii] = padded(ii + MIN_SHOWN);
+      }
+   }
+      
    /**The starting angle for the smile (or frown) on the ResetButton, in degrees. */
    private static final int SMILE_START = 30;
       
@@ -138,7 +216,7 @@ public class NatsMinesweeper extends JFrame
    /**The height of the oval lenses of the sunglasses on the game-won ResetButton. */
    private static final int GLASSES_HEIGHT = 4;
       
-   /**The x-coordinates of the triangle at the base of the flag icon, relative to the origin of the GameSquare. */
+   /**The x-coordinates of the triangle at the base of the flag icon, relative to the origin of the square. */
    private static final int[] FLAG_BASE_X = {1, SQUARE_SIZE - 1, SQUARE_SIZE/2 + 1};
       
    /**The y-coordinates of the triangle at the base of the flag icon. */
@@ -155,30 +233,134 @@ public class NatsMinesweeper extends JFrame
          										FLAG_BASE_Y[2] - POLE_LENGTH/3, 
          										FLAG_BASE_Y[2] - 2*POLE_LENGTH/3};
          								
+   /**The number of shades of the heat map, from a square sure to be safe to one sure to be a mine. */
+   private static final int HEAT_LEVELS = 100;
+      
+   /**The shade laid over a hidden square for each chance of it being a mine, rounded to a whole percent: clear
+     *blue for a square sure to be safe, then ever deeper red.
+     */
+   private static final Color[] HEAT = new Color[HEAT_LEVELS + 1];
+      
+   static
+   {
+      HEAT[0] = new Color(0, 0, 255, 120);
+      for (int ii = 1; ii <= HEAT_LEVELS; ii++)
+      {
+         HEAT[ii] = new Color(255, 0, 0, 30 + 170*ii/HEAT_LEVELS);
+      }
+   }
+      
    /**The colors of the different numbers. The number n will appear in color COLORS[n-1]. */
    private static final Color[] COLORS = {Color.BLUE, Color.GREEN, Color.RED, 
          											Color.BLUE.darker().darker(), Color.RED.darker().darker(), 
 														Color.CYAN, Color.MAGENTA.darker(), Color.BLACK};
 	
-	/**The x and y coordinates of the spot of glare on the mine icon, relative to the origin of the GameSquare. */
+	/**The x and y coordinates of the spot of glare on the mine icon, relative to the origin of the square. */
 	private static final int GLARE_LOC = 5;
 	
 	/**The length and width of the spot of glare on the mine icon. */
 	private static final int GLARE_SIZE = 2;
+	
+	//The images drawn for the squares of the board are numbered 0 through 8 for revealed squares with
+	//that many adjacent mines, followed by these.
+	
+	/**The image number for an unrevealed square. */
+	static final int HIDDEN = 9;
+	
+	/**The image number for a flagged square. */
+	static final int FLAG = 10;
+	
+	/**The image number for an unflagged mine, shown after the game is lost. */
+	static final int MINE = 11;
+	
+	/**The image number for the mine that was clicked on to lose the game. */
+	static final int HIT_MINE = 12;
+	
+	/**The image number for a mistakenly flagged non-mine, shown after the game is lost. */
+	static final int WRONG_FLAG = 13;
    
    /**This is where it all begins. Takes user input to determine the size of the board and
      *the number of mines to be placed, then creates a NatsMinesweper object with the correct
-     *settings. All other setup takes place in the constructor.
+     *settings. All other setup takes place in the constructor. A board code given as the first
+     *argument is played instead.
      */
    public static void main(String[] args)
    {
-		Mode m = Mode.values()[JOptionPane.showOptionDialog(null, 
+		if (args.length > 0)
+		{
+			new NatsMinesweeper(BoardCode.fromCode(args[0]));
+			return;
+		}
+		Object[] options = Arrays.copyOf(Mode.values(), Mode.values().length + 2, Object[].class);
+		options[options.length - 2] = "CUSTOM";
+		options[options.length - 1] = "ENDLESS";
+		int choice = JOptionPane.showOptionDialog(null, 
 												"Which mode would you like to play?", "Difficulty Selection",
 												JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE,
-												null, Mode.values(), Mode.HARD)];
-		NatsMinesweeper game = new NatsMinesweeper(m.getHeight(), m.getWidth(), m.getMines());
+												null, options, Mode.HARD);
+		if (choice < 0) {return;} //The dialog was closed.
+		if (choice == options.length - 1)
+		{
+			new EndlessMinesweeper();
+			return;
+		}
+		int height;
+		int width;
+		int numMines;
+		if (choice < Mode.values().length)
+		{
+			Mode m = Mode.values()[choice];
+			height = m.getHeight();
+			width = m.getWidth();
+			numMines = m.getMines();
+		}
+		else
+		{
+			height = getIntInput("Height of the board:", 1, MAX_SIDE);
+			width = getIntInput("Width of the board:", height == 1 ? 2 : 1, MAX_SIDE);
+			numMines = getIntInput("Number of mines:", 1, height*width - 1);
+		}
+		boolean noGuess = height*width <= MAX_NO_GUESS_SIZE && NoGuessGenerator.isPractical(height, width, numMines)
+								&& JOptionPane.showConfirmDialog(null, 
+												"Only deal boards that can be solved without guessing?", "Board Selection",
+												JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION;
+		NatsMinesweeper game = new NatsMinesweeper(height, width, numMines, noGuess);
    }
    	
+   /**Takes integer input in a specified inclusive range from a dialog, reprompting if the input
+     *is invalid. Exits if the dialog is cancelled.
+     *
+     *@param message The question to ask
+     *@param min The minimum allowed value for the input
+     *@param max The maximimum allowed value for the input
+     *@return The input integer
+     */
+   public static int getIntInput(String message, int min, int max)
+   {
+      String prompt = message;
+      while (true)
+      {
+         String input = JOptionPane.showInputDialog(null, prompt, "Custom Board", JOptionPane.QUESTION_MESSAGE);
+         if (input == null)
+         {
+            System.exit(0);
+         }
+         try
+         {
+            int num = Integer.parseInt(input.trim());
+            if (min <= num && num <= max)
+            {
+               return num;
+            }
+         }
+         catch (NumberFormatException e)
+         {
+            //Falls through to ask again.
+         }
+         prompt = message + "\nPlease enter an integer between " + min + " and " + max + ".";
+      }
+   }
+   
    /**Takes integer input in a sepcified inclusive range from the console, 
      *reprompting if the input is invalid.
      *
@@ -212,56 +394,100 @@ public class NatsMinesweeper extends JFrame
 	  *@param numMines The number of mines to be placed on the game board
 	  */
    public NatsMinesweeper(int height, int width, int numMines)
+   {
+      this(height, width, numMines, false);
+   }
+   
+   /**Constructs a NatsMinesweeper object, optionally dealing only boards which can be solved
+	  *without guessing.
+	  *
+	  *@param height The height of the game board
+	  *@param width The width of the game board
+	  *@param numMines The number of mines to be placed on the game board
+	  *@param noGuess Whether or not every board dealt can be solved without guessing
+	  */
+   public NatsMinesweeper(int height, int width, int numMines, boolean noGuess)
+   {
+      this(height, width, numMines, noGuess, null);
+   }
+   
+   /**Constructs a NatsMinesweeper object which plays the same board every game, such as one read
+	  *from a board code. The first click always opens the square the board was first started from.
+	  *
+	  *@param replay The board to play
+	  */
+   public NatsMinesweeper(Layout replay)
+   {
+      this(replay.getHeight(), replay.getWidth(), replay.getNumMines(), false, replay);
+   }
+   
+   /**Constructs a NatsMinesweeper object, creating all of the other objects needed to play the game.
+	  *
+	  *@param height The height of the game board
+	  *@param width The width of the game board
+	  *@param numMines The number of mines to be placed on the game board
+	  *@param noGuess Whether or not every board dealt can be solved without guessing
+	  *@param replay The board to play every game, or null to deal a new one each game
+	  */
+   private NatsMinesweeper(int height, int width, int numMines, boolean noGuess, Layout replay)
    {
       //Create and set up the window.
       super("Nat's Minesweeper");
-      setSize(2*MARGIN_SIZE + width*SQUARE_SIZE, 
-         	TITLE_BAR_HEIGHT + 3*MARGIN_SIZE + H + height*SQUARE_SIZE);
       setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
-      setResizable(false);
-      gameWon = false;
-      gameLost = false;
+      if (replay == null && (long) height*width > CHUNKED_SIZE)
+      {
+         board = new ChunkedBoard(height, width, numMines); //Its mines are made from a seed as the squares are needed.
+         noGuess = false;
+      }
+      else
+      {
+         board = new Board(height, width, numMines);
+      }
+      this.noGuess = noGuess;
+      this.replay = replay;
+      if (replay == null && board instanceof Board)
+      {
+         BoardPool.warmUp(height, width, numMines, noGuess); //Starts making boards while the window is set up.
+      }
+      openJournal(System.getProperty("minesweeper.journal"));
    	
    	//Create and set up a blank panel to fill the window, on which all other panels will be placed.
-      JPanel panel = new JPanel();
-      panel.setSize(getWidth(), getHeight());
+      JPanel panel = new JPanel(new BorderLayout(0, MARGIN_SIZE));
       panel.setBackground(Color.WHITE);
-      panel.setLayout(null);
+      panel.setBorder(BorderFactory.createEmptyBorder(MARGIN_SIZE, MARGIN_SIZE, MARGIN_SIZE, MARGIN_SIZE));
       add(panel);
+      JPanel top = new JPanel(new BorderLayout());
+      top.setOpaque(false);
+      panel.add(top, BorderLayout.NORTH);
    
    	//Create and set up a MineCounter in the top left of the window to keep track of the mines left.
-      this.numMines = numMines;
-      minesFound = 0;
-      mineCounter = new MineCounter(numMines);
-      panel.add(mineCounter);
-      mineCounter.setLocation(MARGIN_SIZE, MARGIN_SIZE);
+      mineCounter = new MineCounter();
+      top.add(mineCounter, BorderLayout.WEST);
    
    	//Create and set up a TimerDisplay in the top right of the window to display the elapsed time.
       timerDisplay = new TimerDisplay();
-      panel.add(timerDisplay);
-      timerDisplay.setLocation(panel.getWidth() - MARGIN_SIZE - W, MARGIN_SIZE);
+      top.add(timerDisplay, BorderLayout.EAST);
    
-   	//Create and set up a ResetButton to reset the game.
+   	//Create and set up a ResetButton to reset the game, in the middle.
       resetButton = new ResetButton();
-      panel.add(resetButton);
-      resetButton.setLocation(panel.getWidth()/2 - H/2, MARGIN_SIZE);
-   
-   	//Create a board panel to hold all the game squares in a grid pattern, 
-   	//then fill the board (and grid) with GameSquares.
-      JPanel board = new JPanel(new GridLayout(height, width));
-      board.setSize(width*SQUARE_SIZE, height*SQUARE_SIZE);
-      panel.add(board);
-      board.setLocation(MARGIN_SIZE, H + 2*MARGIN_SIZE);
-      grid = new GameSquare[height][width];
-      for (int r = 0; r < height; r++)
-      {
-         for (int c = 0; c < width; c++)
-         {
-            grid[r][c] = new GameSquare(r, c);
-            board.add(grid[r][c]);
-         }
-      }
+      JPanel middle = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 0));
+      middle.setOpaque(false);
+      middle.add(resetButton);
+      top.add(middle, BorderLayout.CENTER);
    
+   	//Create a board panel to draw all the game squares in a grid pattern, in a view which scrolls when the
+   	//window is too small for it.
+      boardPanel = new BoardPanel();
+      JScrollPane scroller = new JScrollPane(boardPanel);
+      scroller.setBorder(BorderFactory.createEmptyBorder());
+      scroller.getViewport().setBackground(Color.WHITE);
+      panel.add(scroller, BorderLayout.CENTER);
+      boardPanel.sizeChanged();
+   
+      //The window fits the board, unless the board is too big for the screen.
+      pack();
+      Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+      setSize(Math.min(getWidth(), screen.width - SCREEN_ALLOWANCE), Math.min(getHeight(), screen.height - SCREEN_ALLOWANCE));
       setVisible(true); //Finally, display the window, allowing the game to begin.
    }
 	
@@ -272,30 +498,289 @@ public class NatsMinesweeper extends JFrame
    public void endGame(boolean victory)
    {
       timerDisplay.stop();
-      if (victory)
+      (victory ? GAMES_WON : GAMES_LOST).increment();
+      GAME_TIME.record(timerDisplay.getElapsedMillis());
+      if (dealt != null)
       {
-         gameWon = true;
+         resetButton.showCode(BoardCode.toCode(dealt)); //Lets the board be shared and played again.
       }
-      else
+      if (!victory)
       {
-         gameLost = true;
+         board.forfeit(); //Only matters when time runs out, otherwise the board already knows it was lost.
+         boardPanel.repaint(); //All of the mines and mistaken flags are shown once the game is lost.
       }
       resetButton.repaint();
-      for (GameSquare[] row : grid)
+   }
+   
+	/**Opens the journal for recording moves, and starts its first game. Games are still played if it
+	  *cannot be opened, but not recorded.
+	  *
+	  *@param file The name of the journal file, or null to record nothing
+	  */
+   private void openJournal(String file)
+   {
+      if (file == null) {return;}
+      try
       {
-         for (GameSquare square : row)
+         journal = new MoveJournal(Paths.get(file));
+      }
+      catch (IOException e)
+      {
+         System.out.println("Not recording moves: " + e.getMessage());
+         return;
+      }
+      startJournalGame();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> //Writes out the last moves when the window is closed.
          {
-            square.repaint();
-         }
+            try
+            {
+               journal.close();
+            }
+            catch (IOException e)
+            {
+               System.out.println("Could not finish recording moves: " + e.getMessage());
+            }
+         }));
+   }
+   
+	/**Starts a new game in the journal. Games on a ChunkedBoard are not recorded, as all of their mines are
+	  *never known, so nothing is written for them.
+	  */
+   private void startJournalGame()
+   {
+      if (board instanceof Board)
+      {
+         journal.startGame(board.getHeight(), board.getWidth(), board.getNumMines());
+      }
+   }
+   
+	/**Records the last move in the journal, if moves are being recorded and the move changed anything.
+	  *Games on a ChunkedBoard are not recorded, as all of their mines are never known.
+	  *
+	  *@param kind The kind of move, one of the MoveJournal constants
+	  *@param square The index of the square
+	  */
+   private void recordMove(int kind, int square)
+   {
+      if (journal != null && dealt != null && board.getNumChanged() > 0)
+      {
+         journal.record(kind, square);
+      }
+   }
+   
+	/**Called after every move on the board, to bring the displays up to date.
+	  *
+	  *@param wasStarted Whether or not the game had already begun before the move.
+	  */
+   private void moveMade(boolean wasStarted)
+   {
+      if (!wasStarted && board.isStarted())
+      {
+         timerDisplay.start(); //The game begins here.
+      }
+      mineCounter.repaint();
+      boardPanel.repaintChanged();
+      if (board.isWon() || board.isLost())
+      {
+         endGame(board.isWon());
       }
    }
 
+	/**Returns the images of every kind of square at the given size, indexed by the image numbers defined above,
+	  *drawing them only if they are not kept from before.
+	  *
+	  *@param pixels The side length of the images, in pixels on the screen.
+	  *@param foreground The color of the mines and flag poles.
+	  *@param font The font the numbers are drawn in, in bold, at the size they are designed at.
+	  *@return the images
+	  */
+   static BufferedImage[] tilesFor(int pixels, Color foreground, Font font)
+   {
+      String key = pixels + " " + foreground.getRGB() + " " + font;
+      synchronized (TILE_CACHE)
+      {
+         BufferedImage[] tiles = TILE_CACHE.get(key);
+         if (tiles == null)
+         {
+            tiles = drawTiles(pixels, foreground, font);
+            TILE_CACHE.put(key, tiles);
+         }
+         return tiles;
+      }
+   }
+   
+	/**Draws the images of every kind of square, scaling the drawings designed at SQUARE_SIZE.
+	  *
+	  *@param pixels The side length of the images.
+	  *@param foreground The color of the mines and flag poles.
+	  *@param font The font the numbers are drawn in, in bold.
+	  *@return the images
+	  */
+   private static BufferedImage[] drawTiles(int pixels, Color foreground, Font font)
+   {
+      BufferedImage[] tiles = new BufferedImage[WRONG_FLAG + 1];
+      Font bold = font.deriveFont(Font.BOLD);
+      for (int tile = 0; tile < tiles.length; tile++)
+      {
+         tiles[tile] = screenImage(pixels, pixels);
+         Graphics2D g = tiles[tile].createGraphics();
+         scaleFrom(g, SQUARE_SIZE, pixels);
+         drawTile(g, tile, foreground, bold);
+         g.dispose();
+      }
+      return tiles;
+   }
+   
+	/**Scales a graphics object so that a drawing designed at one size fills another, smoothing the edges of
+	  *anything not drawn at the size it was designed at.
+	  *
+	  *@param g A graphics object for an image.
+	  *@param designed The size the drawing was designed at.
+	  *@param pixels The size of the image.
+	  */
+   private static void scaleFrom(Graphics2D g, int designed, int pixels)
+   {
+      if (pixels == designed) {return;}
+      g.scale(pixels / (double) designed, pixels / (double) designed);
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+   }
+   
+	/**Returns the next size up from a side length of the squares, about a quarter bigger.
+	  *
+	  *@param size The side length.
+	  *@return the next size up, at most MAX_CELL.
+	  */
+   static int zoomedIn(int size)
+   {
+      return Math.min(MAX_CELL, Math.max(size + 1, Math.round(size * 1.25f)));
+   }
+   
+	/**Returns the next size down from a side length of the squares, undoing zoomedIn.
+	  *
+	  *@param size The side length.
+	  *@return the next size down, at least MIN_CELL.
+	  */
+   static int zoomedOut(int size)
+   {
+      return Math.max(MIN_CELL, Math.min(size - 1, Math.round(size / 1.25f)));
+   }
+   
+	/**Returns the number of pixels on the screen that a length drawn with a graphics object covers, which is
+	  *more than the length itself on a screen scaled up for its high resolution.
+	  *
+	  *@param g A graphics object for the screen.
+	  *@param length The length.
+	  *@return the number of pixels.
+	  */
+   static int pixelsFor(Graphics g, int length)
+   {
+      return (int) Math.round(length * ((Graphics2D) g).getTransform().getScaleX());
+   }
+   
+	/**Creates an image in the screen's own format if there is a screen, so that copying it onto the screen can
+	  *be done by the graphics card rather than converted pixel by pixel.
+	  *
+	  *@param width The width of the image
+	  *@param height The height of the image
+	  *@return the image
+	  */
+   static BufferedImage screenImage(int width, int height)
+   {
+      if (GraphicsEnvironment.isHeadless())
+      {
+         return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      }
+      return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+         .createCompatibleImage(width, height);
+   }
+   
+	/**Draws the image for one kind of square.
+	  *
+	  *@param g A graphics object for the image.
+	  *@param tile The number of the image to draw.
+	  *@param foreground The color of the mines and flag poles.
+	  *@param bold The font the numbers are drawn in.
+	  */
+   private static void drawTile(Graphics g, int tile, Color foreground, Font bold)
+   {
+      if (tile == HIDDEN || tile == FLAG)
+      {
+         g.setColor(Color.GREEN);
+      }
+      else if (tile == HIT_MINE) //Just for the specific mine that was clicked on to lose the game.
+      {
+         g.setColor(Color.RED);
+      }
+      else
+      {
+         g.setColor(Color.WHITE);
+      }
+      g.fillRect(0, 0, SQUARE_SIZE, SQUARE_SIZE);
+      g.setColor(foreground);
+      if (tile == MINE || tile == HIT_MINE || tile == WRONG_FLAG)
+      {
+         g.fillOval(SHIFT - 1, SHIFT - 1, 
+            SQUARE_SIZE - 2*SHIFT + 1, SQUARE_SIZE - 2*SHIFT + 1);
+         g.drawLine(SQUARE_SIZE/2, 0, SQUARE_SIZE/2, SQUARE_SIZE);
+         g.drawLine(0, SQUARE_SIZE/2, SQUARE_SIZE, SQUARE_SIZE/2);
+         g.drawLine(SHIFT, SQUARE_SIZE - SHIFT - 1, SQUARE_SIZE - SHIFT - 1, SHIFT);
+         g.drawLine(SHIFT, SHIFT, SQUARE_SIZE - SHIFT - 1, SQUARE_SIZE - SHIFT - 1);
+         g.setColor(Color.WHITE);
+         g.fillRect(GLARE_LOC, GLARE_LOC, GLARE_SIZE, GLARE_SIZE);
+         if (tile == WRONG_FLAG) //Just mistakenly flagged non-mines after the game is lost.
+         {
+            g.setColor(Color.RED);
+            g.drawLine(0, 0, SQUARE_SIZE, SQUARE_SIZE);
+            g.drawLine(1, 0, SQUARE_SIZE, SQUARE_SIZE - 1);
+            g.drawLine(0, 1, SQUARE_SIZE - 1, SQUARE_SIZE);
+            g.drawLine(0, SQUARE_SIZE - 1, SQUARE_SIZE - 1, 0);
+            g.drawLine(1, SQUARE_SIZE - 1, SQUARE_SIZE - 1, 1);
+            g.drawLine(0, SQUARE_SIZE - 2, SQUARE_SIZE - 2, 0);
+         }
+      }
+      else if (tile == FLAG)
+      {
+         g.fillPolygon(FLAG_BASE_X, FLAG_BASE_Y, FLAG_BASE_X.length);
+         g.drawLine(FLAG_BASE_X[2], FLAG_BASE_Y[2], 
+            		FLAG_BASE_X[2], FLAG_BASE_Y[2] - POLE_LENGTH);
+         g.setColor(Color.RED);
+         g.fillPolygon(FLAG_X, FLAG_Y, FLAG_X.length);
+      }
+      else if (tile > 0 && tile < HIDDEN) //Revealed non-mines
+      {
+         g.setColor(COLORS[tile - 1]);
+         g.setFont(bold);
+         g.drawString(Integer.toString(tile), SHIFT, SQUARE_SIZE - SHIFT);
+      }
+      g.setColor(Color.BLACK); //Every square has a thin black border.
+      g.drawRect(0, 0, SQUARE_SIZE - 1, SQUARE_SIZE - 1);
+   }
+   
+	/**Returns a number as the displays show it, with at least three digits, or a minus sign and two digits.
+	  *
+	  *@param number The number
+	  *@return the number, padded with zeroes
+	  */
+   private static String padded(int number)
+   {
+      String str = Integer.toString(Math.abs(number));
+      while (str.length() < (number < 0 ? DIGITS - 1 : DIGITS))
+      {
+         str = "0" + str;
+      }
+      return number < 0 ? "-" + str : str;
+   }
+   
 	/**Defines the shared properties for the MineCounter and TimerDisplay.
 	  */
    private class Display extends JPanel
    {
    	/**The number to be shown on the display. */
       protected int numShown;
+
+		/**The font the number is drawn in: the panel's own font, at FONT_SIZE. Made on the first paint. */
+      private Font displayFont;
    
    	/**Constructs a new Display object with the correct dimensions (defined as constants
    	  *in the NatsMinesweeper class) and a black background.
@@ -303,6 +788,7 @@ public class NatsMinesweeper extends JFrame
       public Display()
       {
          setSize(W, H);
+         setPreferredSize(getSize());
          setBackground(Color.BLACK);
       }
    	
@@ -314,21 +800,13 @@ public class NatsMinesweeper extends JFrame
       {
          super.paintComponent(g);
          g.setColor(Color.RED);
-         String str = "" + numShown;
-         while (str.length() < DIGITS) //Make sure that the display always shows three filled digits
-         {										//(or negative two digits).
-            if (str.startsWith("-")) //Only for a single digit negative number
-            {
-               str = "-0" + str.substring(1);
-            }
-            else
-            {
-               str = "0" + str;
-            }
+         if (displayFont == null)
+         {
+            displayFont = g.getFont().deriveFont((float) FONT_SIZE); //Keep the old font and style, but with a new size.
          }
-         Font f = g.getFont();
-         g.setFont(new Font(f.getName(), f.getStyle(), FONT_SIZE)); //Keep the old font and style, but with a new size.
-         g.drawString(str, SHIFT, H - SHIFT);
+         g.setFont(displayFont);
+         g.drawString(numShown >= MIN_SHOWN && numShown < MIN_SHOWN + SHOWN.length ? SHOWN[numShown - MIN_SHOWN]
+            : padded(numShown), SHIFT, H - SHIFT);
       }
    }
 	
@@ -336,60 +814,14 @@ public class NatsMinesweeper extends JFrame
 	  */
    private class MineCounter extends Display
    {
-		/**The number of mines left to be flagged on the board.
-		 *This assumes the flags already down are correct, thus adding a flag always decreases this number, whether
-		 *the flag was correctly or incorrectly placed.
-		 */
-      private int minesLeft;
-   
-		/**Constructs a new MineCounter object with the correct starting number of mines.
-		 */
-      public MineCounter(int numMines)
-      {
-         super();
-         minesLeft = numMines;
-      }
-   	
 		/**Paints this panel.
 		 *
 		 *@param g A graphics object associated with this panel.
 		 */
       public void paintComponent(Graphics g)
       {
-         numShown = minesLeft;
+         numShown = board.getMinesLeft();
          super.paintComponent(g);
-      }
-   	
-		/**Resets the MineCounter.
-		  */
-      public void reset()
-      {
-         minesLeft = numMines;
-         repaint();
-      } 
-   	
-		/**Reduces the current count by 1, checking to see if the game has been won.
-		  */
-      public void reduceCount()
-      {
-         minesLeft--;
-         repaint();
-         if (minesLeft == 0 && minesFound == numMines)
-         {
-            endGame(true);
-         }
-      }
-   
-		/**Increases the current count by 1, checking to see if the game has been won.
-		  */
-      public void increaseCount()
-      {
-         minesLeft++;
-         repaint();
-         if (minesLeft == 0 && minesFound == numMines)
-         {
-            endGame(true); //This could only trigger if the player had flagged too many squares,
-         }						//then went back and removed the erroneous ones.
       }
    }
 	
@@ -397,16 +829,37 @@ public class NatsMinesweeper extends JFrame
 	  */
    private class TimerDisplay extends Display
    {
-		/**The amount of time elapsed so far, in seconds. */
-      private int timeElapsed;
+		/**The highest number of seconds that can be shown on the display. Beyond that, the player automatically loses. */
+      private static final int MAX_SECONDS = 999;
+		
+		/**A Swing timer, fired on the event dispatch thread at each whole second of the game. One
+		  *shared Swing thread runs all such timers, so no thread is made per game.
+		  */
+      private final javax.swing.Timer clock;
+		
+		/**The value of System.nanoTime when the game began. */
+      private long startTime;
+		
+		/**The time taken by the last game, in milliseconds, once it has stopped. */
+      private long stoppedAt;
 		
-		/**A Timer to do the actual timing from the computer's internal clock. */
-      private java.util.Timer clock;
+		/**Whether or not the clock is running. */
+      private boolean running;
    	
 		/**Constructs a TimerDisplay object. */
       public TimerDisplay()
       {
-         timeElapsed = 0;
+         clock = new javax.swing.Timer(1000, e -> tick());
+         clock.setRepeats(false); //Set again after every tick, so that the ticks never drift from the clock.
+      }
+   
+		/**Returns the time elapsed so far this game, measured from the monotonic system clock.
+		  *
+		  *@return the time in milliseconds.
+		  */
+      public long getElapsedMillis()
+      {
+         return running ? (System.nanoTime() - startTime) / 1000000 : stoppedAt;
       }
    
 		/**Paints this panel.
@@ -415,42 +868,53 @@ public class NatsMinesweeper extends JFrame
 		 */
       public void paintComponent(Graphics g)
       {
-         numShown = timeElapsed;
+         numShown = (int) Math.min(MAX_SECONDS, getElapsedMillis() / 1000);
          super.paintComponent(g);
       }
    	
-		/**Starts the timer. Creates a new clock and schedules it to increment timeElapsed each second.
-		  */
+		/**Starts the timer. */
       public void start()
       {
-         clock = new java.util.Timer();
-         clock.schedule(
-               new TimerTask() //This is really a new anonymous class, extending TimerTask.
-               {					 //Since it has only one method, it seemed easiest to create it in line here.
-                  public void run() //Called by the Timer when scheduled.
-                  {
-                     timeElapsed++;
-                     if (timeElapsed > 999) //999 is the highest 3 digit integer, the highest number that can
-                     {							  //be shown on the displays. Beyond that, the player automatically loses.
-                        endGame(false);
-                        return;
-                     }
-                     repaint();
-                  }
-               }
-            			, 1000, 1000); //1000 milliseconds, so a repeated 1 second delay.
+         startTime = System.nanoTime();
+         running = true;
+         scheduleTick();
+      }
+   	
+		/**Called on the event dispatch thread at each whole second. */
+      private void tick()
+      {
+         if (!running) {return;}
+         TIMER_DRIFT.record(getElapsedMillis() % 1000);
+         if (getElapsedMillis() / 1000 > MAX_SECONDS)
+         {
+            endGame(false);
+            return;
+         }
+         repaint();
+         scheduleTick();
+      }
+   	
+		/**Sets the clock to fire at the next whole second of the game. */
+      private void scheduleTick()
+      {
+         clock.setInitialDelay((int) (1000 - getElapsedMillis() % 1000));
+         clock.restart();
       }
    	
-		/**Stops the clock. */
+		/**Stops the clock. Does nothing if it is not running. */
       public void stop()
       {
-         clock.cancel();
+         if (!running) {return;}
+         stoppedAt = getElapsedMillis();
+         running = false;
+         clock.stop();
       }
    	
 		/**Resets the clock. */
       public void reset()
       {
-         timeElapsed = 0;
+         stop();
+         stoppedAt = 0;
          repaint();
       }
    }
@@ -458,52 +922,108 @@ public class NatsMinesweeper extends JFrame
 	/**A panel clicked on to reset the game. */
    private class ResetButton extends JPanel
    {
+		//The faces the button can show, indexing faces.
+      private static final int SMILING = 0;
+      private static final int SUNGLASSES = 1;
+      private static final int DEAD = 2;
+   	
+		/**The pre-drawn image of each face, made on the first paint and again whenever the screen's scale changes. */
+      private BufferedImage[] faces;
+   	
+		/**The side length of the images of the faces, in pixels on the screen. */
+      private int facePixels;
+   	
+		/**The code of the board just finished, or null while a game is being played. */
+      private String code;
+   	
 		/**Constructs a new ResetButton. */
       public ResetButton()
       {
          setBackground(Color.WHITE);
          setSize(H, H);
+         setPreferredSize(getSize());
          addMouseListener(
                new MouseAdapter() //Another anonymous class, extending MouseAdapter, created in line.
                {
                   public void mouseClicked(MouseEvent e) //Called whenever this panel is clicked on.
                   {
-                     gameLost = false;
-                     gameWon = false;
+                     if (code != null && (e.isControlDown() || SwingUtilities.isRightMouseButton(e))) //right click
+                     {
+                        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(code), null);
+                        return;
+                     }
+                     showCode(null);
+                     board.reset();
+                     dealt = null;
+                     if (journal != null && board instanceof Board) //A ChunkedBoard's games are not recorded.
+                     {
+                        journal.reset();
+                        startJournalGame();
+                     }
                      repaint();
-                     mineCounter.reset();
+                     mineCounter.repaint();
                      timerDisplay.stop();
                      timerDisplay.reset();
-                     for (GameSquare[] row : grid)
-                     {
-                        for (GameSquare square : row)
-                        {
-                           square.reset();
-                        }
-                     }
-                     numRevealed = 0;
-							minesFound = 0;
+                     boardPanel.repaint(); //Repaints the whole board at once.
                   }
                });
       }
    	
-		/**Paints this panel. Typically, the button shows a smiley face. If the game has been won, the
-		 *smiley face gets sunglasses. If the game has been lost, it becomes a frowny face with crossed out eyes.
+		/**Shows the code of the board just finished when the mouse rests on the button, where a right click
+		 *copies it.
+		 *
+		 *@param code The code of the board, or null to show nothing once a new game begins.
+		 */
+      public void showCode(String code)
+      {
+         this.code = code;
+         setToolTipText(code == null ? null : "Board code: " + code + " (right click to copy)");
+      }
+   	
+		/**Paints this panel, copying the image of the face for the state of the game into place.
 		 *
 		 *@param g A graphics object associated with this panel.
 		 */
       public void paintComponent(Graphics g)
       {
          super.paintComponent(g);
+         int pixels = pixelsFor(g, H);
+         if (faces == null || facePixels != pixels)
+         {
+            faces = new BufferedImage[DEAD + 1];
+            facePixels = pixels;
+            for (int face = 0; face < faces.length; face++)
+            {
+               faces[face] = screenImage(pixels, pixels);
+               Graphics2D image = faces[face].createGraphics();
+               image.setColor(getBackground());
+               image.fillRect(0, 0, pixels, pixels);
+               scaleFrom(image, H, pixels);
+               image.setFont(g.getFont());
+               drawFace(image, face);
+               image.dispose();
+            }
+         }
+         g.drawImage(faces[board.isLost() ? DEAD : board.isWon() ? SUNGLASSES : SMILING], 0, 0, H, H, null);
+      }
+   	
+		/**Draws one of the faces. Typically, the button shows a smiley face. If the game has been won, the
+		 *smiley face gets sunglasses. If the game has been lost, it becomes a frowny face with crossed out eyes.
+		 *
+		 *@param g A graphics object for the image of the face.
+		 *@param face SMILING, SUNGLASSES or DEAD.
+		 */
+      private void drawFace(Graphics g, int face)
+      {
          g.setColor(Color.YELLOW);
          g.fillOval(0, 0, H-1, H-1);
          g.setColor(Color.BLACK);
          g.drawOval(0, 0, H-1, H-1);
-         if (gameLost) //Frowny face
+         if (face == DEAD) //Frowny face
          {
             g.drawArc(H/4, 3*H/5, H/2, H/2, SMILE_START, SMILE_LENGTH);
             Font f = g.getFont();
-            g.setFont(new Font(f.getName(), f.getStyle(), 2*f.getSize()/3));
+            g.setFont(f.deriveFont((float) (2*f.getSize()/3)));
             g.drawString("x", H/4 - 1, H/4 + DEAD_EYE_SIZE);
             g.drawString("x", 3*H/4 - DEAD_EYE_SIZE + 1, H/4 + DEAD_EYE_SIZE);
             g.setFont(f);
@@ -511,7 +1031,7 @@ public class NatsMinesweeper extends JFrame
          else //Smiley face
          {
             g.drawArc(H/4, H/4, H/2, H/2, -SMILE_START, -SMILE_LENGTH);
-            if (gameWon) //with sunglasses
+            if (face == SUNGLASSES)
             {
                g.fillOval(H/4 - 1, H/4, GLASSES_WIDTH, GLASSES_HEIGHT);
                g.fillOval(3*H/4 - GLASSES_WIDTH + 1, H/4, GLASSES_WIDTH, GLASSES_HEIGHT);
@@ -527,301 +1047,282 @@ public class NatsMinesweeper extends JFrame
       }
    }
 	
-	/**A single square of the game board. */
-   private class GameSquare extends JPanel
+	/**The game board. A single panel draws every square from a set of pre-drawn images and works out
+	  *which square was clicked on from the position of the mouse, while the board holds all of their state.
+	  */
+   private class BoardPanel extends JPanel
    {
-		/**The number of mines adjacent to this GameSquare.
-		  *This number may not be accurate for a square that is itself a mine, but that should never be needed.
+		/**The side length the squares are shown at, before any scaling up for a high resolution screen. */
+      private int cellSize = Math.max(MIN_CELL, Math.min(MAX_CELL, Integer.getInteger("minesweeper.cell", SQUARE_SIZE)));
+   	
+		/**The pre-drawn images of the squares, indexed by the image numbers defined in the outer class, for
+		  *the size the squares were last painted at.
 		  */
-      private int adjacentMines;
-		
-		/**Whether or not this square is a mine. */
-      private boolean mine;
-		
-		/**Whether or not this square has been revealed. */
-      private boolean revealed;
-		
-		/**Whether or not this square has been flagged.
-		  *Should never be true if revealed is true (and vice versa).
+      private BufferedImage[] tiles;
+   	
+		/**The side length of the images in tiles, in pixels on the screen. */
+      private int tilePixels;
+   	
+		/**The chance of each hidden square being a mine, shown over the board when it is on, or null for a
+		  *ChunkedBoard, which is too big to work out.
 		  */
-      private boolean flagged;
-		
-		/**The row of this square in the grid. */
-      private int row;
-		
-		/**The column of this square in the grid. */
-      private int col;
+      private final ProbabilityMap heatMap;
    	
-		/**Constructs a new GameSquare.
-		  *
-		  *@param r The square's row
-		  *@param c The square's column
+		/**Constructs a new BoardPanel the size of the board. Holding down control while turning the mouse
+		  *wheel, or pressing control and plus, minus or zero, zooms in and out. Control and H shows or hides the
+		  *chance of each hidden square being a mine, which is shown from the start with -Dminesweeper.heatmap=true.
 		  */
-      public GameSquare(int r, int c)
+      public BoardPanel()
       {
          super();
-         setBorder(BorderFactory.createLineBorder(Color.BLACK));
-         adjacentMines = 0;
-         mine = false;
-         revealed = false;
-         flagged = false;
-         this.row = r;
-         this.col = c;
+         heatMap = board instanceof Board ? new ProbabilityMap((Board) board, this::repaint) : null;
+         if (heatMap != null)
+         {
+            heatMap.setOn(Boolean.getBoolean("minesweeper.heatmap"));
+            bindKey("control H", "heat map", () -> heatMap.setOn(!heatMap.isOn()));
+         }
+         setPreferredSize(new Dimension(board.getWidth()*cellSize, board.getHeight()*cellSize));
+         addMouseWheelListener(e ->
+            {
+               if (e.isControlDown())
+               {
+                  zoom(e.getWheelRotation() < 0 ? zoomedIn(cellSize) : zoomedOut(cellSize), e.getPoint());
+               }
+               else //Scrolls the view as usual.
+               {
+                  getParent().dispatchEvent(SwingUtilities.convertMouseEvent(this, e, getParent()));
+               }
+            });
+         bindKey("control EQUALS", "zoom in", () -> zoom(zoomedIn(cellSize), null));
+         bindKey("control PLUS", "zoom in", () -> zoom(zoomedIn(cellSize), null));
+         bindKey("control ADD", "zoom in", () -> zoom(zoomedIn(cellSize), null));
+         bindKey("control MINUS", "zoom out", () -> zoom(zoomedOut(cellSize), null));
+         bindKey("control SUBTRACT", "zoom out", () -> zoom(zoomedOut(cellSize), null));
+         bindKey("control 0", "actual size", () -> zoom(SQUARE_SIZE, null));
          addMouseListener(
                new MouseAdapter() //Yet another anonymous class, extending MouseAdapter, created in line here.
                {
-                  public void mousePressed(MouseEvent e) //Called whenever this square is clicked on.
+                  public void mousePressed(MouseEvent e) //Called whenever the board is clicked on.
                   {
-                     if (gameWon || gameLost) {return;} //Clicking squares does nothing if the game is over.
-                     if (revealed) //Double clicking a revealed square, if it is already touching the correct
-                     {				  //number of flags, will reveal everything else around it.
-                        if (e.getClickCount() >= 2 && countAdjacentFlags() == adjacentMines)
+                     if (Metrics.ENABLED)
+                     {
+                        EVENT_LATENCY.record(System.currentTimeMillis() - e.getWhen());
+                     }
+                     if (board.isWon() || board.isLost()) {return;} //Clicking squares does nothing if the game is over.
+                     int row = e.getY() / cellSize;
+                     int col = e.getX() / cellSize;
+                     if (row < 0 || row >= board.getHeight() || col < 0 || col >= board.getWidth()) {return;}
+                     int square = board.index(row, col);
+                     boolean wasStarted = board.isStarted();
+                     if (board.isRevealed(square)) //Double clicking a revealed square, if it is already touching the correct
+                     {									  //number of flags, will reveal everything else around it.
+                        if (e.getClickCount() >= 2)
                         {
-                           for (GameSquare square : getAdjacentSquares())
-                           {
-                              square.reveal();
-                           }
+                           board.chord(square);
+                           recordMove(MoveJournal.CHORD, square);
                         }
                      }
                      else if (e.isControlDown() || SwingUtilities.isRightMouseButton(e)) //right click
                      {
-                        if (numRevealed == 0) {return;} //Game has not begun yet.
-                        flagged = !flagged;
-                        if (flagged) //just placed a flag
-                        {
-                           if (mine)
-                           {	
-                              minesFound++;
-                           }
-                           mineCounter.reduceCount();
-                        }
-                        else //just removed a flag
-                        {
-                           if (mine)
-                           {
-                              minesFound--;
-                           }
-                           mineCounter.increaseCount();
-                        }
-                        repaint();
+                        board.toggleFlag(square); //Does nothing if the game has not begun yet.
+                        recordMove(board.isFlagged(square) ? MoveJournal.FLAG : MoveJournal.UNFLAG, square);
                      }
                      else //left click
                      {
-                        if (numRevealed == 0) //The game begins here.
+                        long began = Metrics.start();
+                        if (!wasStarted && replay != null) //A shared board always starts where it first did.
+                        {
+                           square = replay.getStart() >= 0 ? replay.getStart() : square;
+                           dealt = replay.startingAt(square);
+                           dealt.placeOn((Board) board); //Always a Board, whatever its size.
+                        }
+                        else if (!wasStarted && board instanceof Board) //A ready board that is safe to start here is taken
+                        {                                                //from the pool. A ChunkedBoard makes its own mines.
+                           dealt = BoardPool.deal(board.getHeight(), board.getWidth(), board.getNumMines(), noGuess, 
+                              square).startingAt(square);
+                           dealt.placeOn((Board) board);
+                        }
+                        if (!wasStarted)
                         {
-                           ArrayList<Integer> squares = new ArrayList<Integer>();
-                           for (int ii = 0; ii < grid.length * grid[0].length; ii++)
-                           {
-                              squares.add(ii); //This list contains an integer representing each square in the board.
-                           }
-                           squares.remove(row * grid[0].length + col); //This protects the first click from being a mine.
-                           for (int ii = 0; ii < numMines; ii++)
-                           {
-										//Randomly select a mine, numMines times.
-                              Integer choice = squares.remove((int) (squares.size() * Math.random()));
-                              grid[choice / grid[0].length][choice % grid[0].length].setMine();
-                           }
-                           for (Integer notMine : squares)
-                           {
-										//All non-mines must know how many mines they are touching.
-                              grid[notMine / grid[0].length][notMine % grid[0].length].countAdjacentMines();
-                           }
-                           countAdjacentMines(); //Including the one originally clicked.
-                           timerDisplay.start();
+                           DEAL_TIME.stop(began);
+                           began = Metrics.start();
                         }
-                        if (!flagged)
+                        if (!wasStarted && journal != null && dealt != null) //A ChunkedBoard is never dealt.
                         {
-                           reveal();
+                           journal.deal(dealt);
                         }
+                        board.reveal(square);
+                        REVEAL_TIME.stop(began);
+                        REVEAL_SIZE.record(board.getNumChanged());
+                        recordMove(MoveJournal.REVEAL, square);
                      }
+                     moveMade(wasStarted);
                   }
                });				
       }
    	
-		/**Resets the square to its pre-game state. */
-      public void reset()
-      {
-         mine = false;
-         revealed = false;
-         flagged = false;
-         repaint();
-      }
-   
-		/**Reveals this square (assuming it can be revealed). */
-      public void reveal()
+		/**Repaints the squares changed by the last move, all at once, by repainting the smallest
+		  *rectangle of the board containing all of them.
+		  */
+      public void repaintChanged()
       {
-         if (revealed || flagged) {return;}
-         revealed = true;
-         repaint();
-         if (mine)
-         {
-            endGame(false);
-         }
-         else
+         if (board.getNumChanged() == 0) {return;}
+         int top = board.getHeight();
+         int left = board.getWidth();
+         int bottom = -1;
+         int right = -1;
+         for (int ii = 0; ii < board.getNumChanged(); ii++)
          {
-            numRevealed++;
-            if (numRevealed == grid.length * grid[0].length - numMines)
-            {
-               endGame(true); //Called if the player has revealed ever non-mine square, even if he hasn't flagged mines.
-            }
-         
-            ArrayList<GameSquare> revealThese = null;
-            if (adjacentMines == 0) //Blank squares automatically reveal everything around them.
-            {
-               revealThese = getAdjacentSquares();
-            }
-            else //All (non-mine) squares reveal any blank squares around them.
-            {
-               revealThese = getAdjacentEmptySquares();
-            }
-            for (GameSquare square : revealThese)
-            {
-               square.reveal();
-            }
+            int square = board.getChanged(ii);
+            int row = square / board.getWidth();
+            int col = square % board.getWidth();
+            top = Math.min(top, row);
+            bottom = Math.max(bottom, row);
+            left = Math.min(left, col);
+            right = Math.max(right, col);
          }
+         repaint(left*cellSize, top*cellSize, 
+            (right - left + 1)*cellSize, (bottom - top + 1)*cellSize);
       }
-   
-		/**Generates a list of all squares adjacent to this one.
-		  *@return a list of all squares adjacent to this one
+   	
+		/**Changes the size the squares are shown at, keeping the square under a point of the view where it was.
+		  *
+		  *@param size The new side length of the squares.
+		  *@param anchor The point, or null for the middle of the view.
 		  */
-      private ArrayList<GameSquare> getAdjacentSquares()
+      private void zoom(int size, Point anchor)
       {
-         ArrayList<GameSquare> list = new ArrayList<GameSquare>();
-         for (int r = row - 1; r <= row + 1; r++)
+         size = Math.max(MIN_CELL, Math.min(MAX_CELL, size));
+         if (size == cellSize) {return;}
+         Rectangle view = getVisibleRect();
+         if (anchor == null)
          {
-            if (r >= 0 && r < grid.length)
-            {
-               for (int c = col - 1; c <= col + 1; c++)
-               {
-                  if (c >= 0 && c < grid[0].length)
-                  {
-                     list.add(grid[r][c]);
-                  }
-               }
-            }
+            anchor = new Point(view.x + view.width/2, view.y + view.height/2);
          }
-         return list;
-      }
-   
-		/**Generates a list of any empty squares adjacent to this one.
-		  *@return a list of any empty squares adjacent to this one.
-		  */
-      private ArrayList<GameSquare> getAdjacentEmptySquares()
-      {
-         ArrayList<GameSquare> list = new ArrayList<GameSquare>();
-         for (GameSquare square : getAdjacentSquares())
+         double x = anchor.x * (double) size / cellSize;
+         double y = anchor.y * (double) size / cellSize;
+         cellSize = size;
+         setPreferredSize(new Dimension(board.getWidth()*cellSize, board.getHeight()*cellSize));
+         sizeChanged();
+         if (getParent() instanceof JViewport)
          {
-            if (!square.mine && square.adjacentMines == 0) //Must check to see if square is a mine, because mines
-            {															  //may not have the correct value for adjacentMines.
-               list.add(square);
-            }
+            JViewport viewport = (JViewport) getParent();
+            viewport.setViewSize(getPreferredSize());
+            Dimension extent = viewport.getExtentSize();
+            viewport.setViewPosition(new Point(
+               (int) Math.max(0, Math.min(getPreferredSize().width - extent.width, x - (anchor.x - view.x))),
+               (int) Math.max(0, Math.min(getPreferredSize().height - extent.height, y - (anchor.y - view.y)))));
          }
-         return list;
+         repaint();
       }
    	
-		/**Counts the number of mines adjacent to this square. */
-      public void countAdjacentMines()
+		/**Brings the scrolling view up to date with the size of the squares, so that each click of a scroll bar
+		  *arrow moves by a square.
+		  */
+      void sizeChanged()
       {
-         adjacentMines = 0;
-         for (GameSquare square : getAdjacentSquares())
+         revalidate();
+         JScrollPane scroller = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, this);
+         if (scroller != null)
          {
-            if (square.mine)
-            {
-               adjacentMines++;
-            }
+            scroller.getVerticalScrollBar().setUnitIncrement(cellSize);
+            scroller.getHorizontalScrollBar().setUnitIncrement(cellSize);
          }
       }
    	
-		/**Counts the number of flagged squares adjacent to this square.
-		  *Used only for the feature of double-clicking to reveal everything around an already revealed
-		  *square, provided that the square is already touching its correct number of flags.
+		/**Binds a key to something to be done whenever it is pressed while the window is in front.
 		  *
-		  *@return the number of adjacent squares which are flagged
+		  *@param key The key, as KeyStroke.getKeyStroke understands it.
+		  *@param name The name of what is done.
+		  *@param action What is done.
 		  */
-      public int countAdjacentFlags()
+      private void bindKey(String key, String name, Runnable action)
       {
-         int adjacentFlags = 0;
-         for (GameSquare square : getAdjacentSquares())
-         {
-            if(square.flagged)
+         getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key), name);
+         getActionMap().put(name, new AbstractAction()
             {
-               adjacentFlags++;
-            }
-         }
-         return adjacentFlags;
+               public void actionPerformed(ActionEvent e)
+               {
+                  action.run();
+               }
+            });
       }
    	
-		/**Sets this square to be a mine. */
-      public void setMine()
-      {
-         mine = true;
-      }
-   
-		/**Paints this panel. During the game, an unrevealed panel appears green. If flagged, a flag icon
-		  *appears on top of the green background. A revealed square appears white. Non-blank revealed squares
-		  *display the number of adjacent mines in the appropriate color. When a mine is clicked on, that square
-		  *turns red and shows a mine icon. All unidentified mines then turn white and show a mine icon.
-		  *Incorrectly flagged squares then turn white and show a flag icon crossed out by a red X.
+		/**Paints this panel, copying the image for each square that needs repainting into place.
 		  *
 		  *@param g A graphics object associated with this panel.
 		  */
       public void paintComponent(Graphics g)
       {
-         super.paintComponent(g);
-			//This if statement isolates all conditions in which a square would appear white
-			//(and one condition which would make it red). 
-         if (revealed || (gameLost && ((mine && !flagged) || (!mine && flagged))))
+         long began = Metrics.start();
+         Rectangle clip = g.getClipBounds();
+         if (clip == null)
          {
-            setBackground(Color.WHITE);
-            if (mine || flagged) //All conditions which would show a mine icon.
-            {							//Any flagged square that fit the first if statement must be a falsely flagged
-               if (revealed)		//non-mine after the game is lost, so it does fit this category.
-               {
-                  setBackground(Color.RED); //Just for the specific mine that was clicked on to lose the game.
-               }
-               g.fillOval(SHIFT - 1, SHIFT - 1, 
-                  SQUARE_SIZE - 2*SHIFT + 1, SQUARE_SIZE - 2*SHIFT + 1);
-               g.drawLine(SQUARE_SIZE/2, 0, SQUARE_SIZE/2, SQUARE_SIZE);
-               g.drawLine(0, SQUARE_SIZE/2, SQUARE_SIZE, SQUARE_SIZE/2);
-               g.drawLine(SHIFT, SQUARE_SIZE - SHIFT - 1, SQUARE_SIZE - SHIFT - 1, SHIFT);
-               g.drawLine(SHIFT, SHIFT, SQUARE_SIZE - SHIFT - 1, SQUARE_SIZE - SHIFT - 1);
-               g.setColor(Color.WHITE);
-               g.fillRect(GLARE_LOC, GLARE_LOC, GLARE_SIZE, GLARE_SIZE);
-               if (flagged) //Just mistakenly flagged non-mines after the game is lost.
-               {
-                  g.setColor(Color.RED);
-                  g.drawLine(0, 0, SQUARE_SIZE, SQUARE_SIZE);
-                  g.drawLine(1, 0, SQUARE_SIZE, SQUARE_SIZE - 1);
-                  g.drawLine(0, 1, SQUARE_SIZE - 1, SQUARE_SIZE);
-                  g.drawLine(0, SQUARE_SIZE - 1, SQUARE_SIZE - 1, 0);
-                  g.drawLine(1, SQUARE_SIZE - 1, SQUARE_SIZE - 1, 1);
-                  g.drawLine(0, SQUARE_SIZE - 2, SQUARE_SIZE - 2, 0);
-               }
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+         }
+         int pixels = pixelsFor(g, cellSize);
+         if (pixels != tilePixels) //Only the fourteen images are drawn again, for the new size or screen.
+         {
+            tiles = tilesFor(pixels, getForeground(), getFont());
+            tilePixels = pixels;
+         }
+         int firstRow = Math.max(0, clip.y / cellSize);
+         int lastRow = Math.min(board.getHeight() - 1, (clip.y + clip.height - 1) / cellSize);
+         int firstCol = Math.max(0, clip.x / cellSize);
+         int lastCol = Math.min(board.getWidth() - 1, (clip.x + clip.width - 1) / cellSize);
+         for (int r = firstRow; r <= lastRow; r++)
+         {
+            for (int c = firstCol; c <= lastCol; c++)
+            {
+               g.drawImage(tiles[tileFor(board.index(r, c))], c*cellSize, r*cellSize, cellSize, cellSize, null);
             }
-            else //Revealed non-mines
+         }
+         if (heatMap != null && heatMap.isOn() && !board.isLost())
+         {
+            for (int r = firstRow; r <= lastRow; r++)
             {
-               if (adjacentMines != 0)
+               for (int c = firstCol; c <= lastCol; c++)
                {
-                  g.setColor(COLORS[adjacentMines - 1]);
-                  Font f = g.getFont();
-                  g.setFont(new Font(f.getName(), Font.BOLD, f.getSize()));
-                  g.drawString("" + adjacentMines, 
-                     		SHIFT, SQUARE_SIZE - SHIFT);
+                  int square = board.index(r, c);
+                  float chance = heatMap.getChance(square);
+                  if (chance < 0 || board.isRevealed(square) || board.isFlagged(square)) {continue;}
+                  g.setColor(HEAT[chance == 0 ? 0 : Math.max(1, Math.round(chance * HEAT_LEVELS))]);
+                  g.fillRect(c*cellSize, r*cellSize, cellSize, cellSize);
                }
             }
          }
-         else //Unrevealed
+         PAINT_TIME.stop(began);
+      }
+   	
+		/**Decides which image to show for a square. During the game, an unrevealed square appears green. If flagged,
+		  *a flag icon appears on top of the green background. A revealed square appears white. Non-blank revealed
+		  *squares display the number of adjacent mines in the appropriate color. When a mine is clicked on, that
+		  *square turns red and shows a mine icon. All unidentified mines then turn white and show a mine icon.
+		  *Incorrectly flagged squares then turn white and show a flag icon crossed out by a red X.
+		  *
+		  *@param square The index of the square
+		  *@return the number of the image to show
+		  */
+      private int tileFor(int square)
+      {
+         boolean revealed = board.isRevealed(square);
+         boolean flagged = board.isFlagged(square);
+         if (!revealed && !board.isLost()) //Saves a ChunkedBoard from making the mines of every square on show.
+         {
+            return flagged ? FLAG : HIDDEN;
+         }
+         boolean mine = board.isMine(square);
+			//This if statement isolates all conditions in which a square would appear white
+			//(and one condition which would make it red). 
+         if (revealed || (board.isLost() && mine != flagged))
          {
-            setBackground(Color.GREEN);
-            if (flagged)
+            if (revealed)
             {
-               g.fillPolygon(FLAG_BASE_X, FLAG_BASE_Y, FLAG_BASE_X.length);
-               g.drawLine(FLAG_BASE_X[2], FLAG_BASE_Y[2], 
-                  		FLAG_BASE_X[2], FLAG_BASE_Y[2] - POLE_LENGTH);
-               g.setColor(Color.RED);
-               g.fillPolygon(FLAG_X, FLAG_Y, FLAG_X.length);
+               return mine ? HIT_MINE : board.getAdjacentMines(square);
             }
+            return flagged ? WRONG_FLAG : MINE;
          }
+         return flagged ? FLAG : HIDDEN;
       }
    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,232 @@
+import java.util.*; //For ArrayList, List and SplittableRandom
+import java.util.concurrent.*; //For Callable, CancellationException, Executors, ExecutorService and TimeUnit
+import java.util.random.RandomGenerator;
+
+/**Deals boards which can be cleared from the first click without ever guessing. A candidate board is played
+  *by the Solver, revealing only squares it knows to be safe. Whenever the solver gets stuck, one of the mines
+  *it cannot place is moved somewhere away from the revealed squares, and play starts again from the first
+  *click (squares revealed before the move may no longer be deducible after it). A candidate that
+  *still gets stuck after a number of these repairs is thrown away for a fresh one. Several candidates are
+  *raced on different cores, and the first to finish wins.
+  *
+  *Every board has a safe opening around its first square, and can also be started by clicking anywhere else
+  *in that opening. BoardPool keeps a few ready, so a game rarely waits for one.
+  *
+  *The denser the board, the fewer candidates can be solved, until almost none can; isPractical says which
+  *sizes are worth trying. Even then, generation gives up after MAX_CANDIDATES candidates on each thread,
+  *or after RACE_MILLIS while someone waits, so that the caller can deal an ordinary board instead.
+  */
+public class NoGuessGenerator
+{
+   /**The number of times a candidate board may be repaired before it is thrown away. */
+   private static final int MAX_REPAIRS = 24;
+
+   /**The number of candidates tried on one thread before giving up. Hard rarely needs more than 16. */
+   private static final int MAX_CANDIDATES = 256;
+
+   /**The longest a race of candidates may take, in milliseconds, as someone is waiting for it. */
+   private static final long RACE_MILLIS = 5000;
+
+   /**The largest share of the squares which may be mines, the same as Hard. Denser boards can almost
+     *never be solved without guessing.
+     */
+   private static final double MAX_DENSITY = 99.0 / 480;
+
+   /**The threads which race candidate boards while someone waits for one. */
+   private static final ExecutorService RACERS = Executors.newFixedThreadPool(
+         Runtime.getRuntime().availableProcessors(), new DaemonThreads("no-guess racer"));
+
+   /**The height of the boards dealt. */
+   private final int height;
+
+   /**The width of the boards dealt. */
+   private final int width;
+
+   /**The number of mines on the boards dealt. */
+   private final int numMines;
+
+   /**Constructs a NoGuessGenerator for boards of the given size.
+     *
+     *@param height The height of the boards
+     *@param width The width of the boards
+     *@param numMines The number of mines on the boards, which must leave room for a safe opening
+     */
+   public NoGuessGenerator(int height, int width, int numMines)
+   {
+      if (numMines > height * width - 9)
+      {
+         throw new IllegalArgumentException("Too many mines to leave a safe opening: " + numMines);
+      }
+      this.height = height;
+      this.width = width;
+      this.numMines = numMines;
+   }
+
+   /**Returns whether or not no-guess boards of the given size can be generated in a reasonable time: there
+     *must be room for a safe opening, and no more mines than Hard has for its size.
+     *
+     *@param height The height of the boards
+     *@param width The width of the boards
+     *@param numMines The number of mines on the boards
+     *@return whether or not to offer no-guess boards of this size
+     */
+   public static boolean isPractical(int height, int width, int numMines)
+   {
+      return numMines <= height * width - 9 && numMines <= MAX_DENSITY * height * width;
+   }
+
+   /**Generates a board by racing candidates on every core.
+     *
+     *@param start The index of the first square to be clicked
+     *@return the layout of the board
+     *@throws IllegalStateException if no board is found within RACE_MILLIS
+     */
+   public Layout generate(int start)
+   {
+      SplittableRandom seeds = new SplittableRandom();
+      List<Callable<Layout>> candidates = new ArrayList<Callable<Layout>>();
+      for (int ii = 0; ii < Runtime.getRuntime().availableProcessors(); ii++)
+      {
+         final SplittableRandom random = seeds.split();
+         candidates.add(() -> generate(start, random));
+      }
+      try
+      {
+         //The others are interrupted as soon as one finishes, and all of them if time runs out.
+         return RACERS.invokeAny(candidates, RACE_MILLIS, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while generating a board", e);
+      }
+      catch (ExecutionException e)
+      {
+         throw new IllegalStateException("Could not generate a board", e.getCause());
+      }
+      catch (TimeoutException e)
+      {
+         throw new IllegalStateException("No board found without guessing in " + RACE_MILLIS + " ms", e);
+      }
+   }
+
+   /**Generates a board on the current thread. The same source of randomness always gives the same board.
+     *
+     *@param start The index of the first square to be clicked
+     *@param random The source of randomness
+     *@return the layout of the board
+     *@throws CancellationException if the thread is interrupted first
+     *@throws IllegalStateException if none of MAX_CANDIDATES candidates can be solved
+     */
+   public Layout generate(int start, RandomGenerator random)
+   {
+      Board board = new Board(height, width, numMines);
+      board.setSafeOpening(true);
+      board.setRandom(random);
+      Solver solver = new Solver();
+      int[] mines = new int[numMines];
+      int[] neighbors = new int[board.getMaxNeighbors()];
+      for (int candidate = 0; candidate < MAX_CANDIDATES; candidate++)
+      {
+         if (Thread.currentThread().isInterrupted())
+         {
+            throw new CancellationException();
+         }
+         board.reset();
+         board.reveal(start);
+         int repairs = 0;
+         while (!board.isWon() && repairs <= MAX_REPAIRS)
+         {
+            solver.solve(board);
+            if (solver.getNumSafe() > 0)
+            {
+               for (int ii = 0; ii < solver.getNumSafe(); ii++)
+               {
+                  board.reveal(solver.getSafe(ii));
+               }
+            }
+            else if (repairs++ < MAX_REPAIRS)
+            {
+               repair(board, random, start, mines, neighbors);
+            }
+         }
+         if (board.isWon())
+         {
+            mines = board.getMines();
+            board.reset();
+            board.placeMines(mines);
+            board.reveal(start);
+            long[] opening = new long[(board.size() + 63) >>> 6];
+            for (int square = 0; square < board.size(); square++)
+            {
+               if (board.isRevealed(square))
+               {
+                  opening[square >>> 6] |= 1L << square;
+               }
+            }
+            return new Layout(height, width, start, mines, opening);
+         }
+      }
+      throw new IllegalStateException("No board found without guessing in " + MAX_CANDIDATES + " candidates");
+   }
+
+   /**Moves one of the mines the solver is stuck on to a square no revealed number touches, then starts the
+     *board again from the first square. If there is nowhere to move it, the board is left stuck.
+     *
+     *@param board The board, part way through being solved
+     *@param random The source of randomness
+     *@param start The first square
+     *@param mines Room for the indices of the mines
+     *@param neighbors Room for the neighbors of a square
+     */
+   private static void repair(Board board, RandomGenerator random, int start, int[] mines, int[] neighbors)
+   {
+      //Picks a mine on the frontier whose position the solver could not work out, and an empty square away from it all.
+      int from = -1;
+      int candidates = 0;
+      for (int square = 0; square < board.size(); square++)
+      {
+         if (board.isMine(square) && !board.isRevealed(square) && touchesRevealed(board, square, neighbors)
+            && random.nextInt(++candidates) == 0)
+         {
+            from = square;
+         }
+      }
+      int to = -1;
+      for (int tries = 0; tries < 64 && to < 0; tries++)
+      {
+         int square = random.nextInt(board.size());
+         if (!board.isMine(square) && !board.isRevealed(square) && !touchesRevealed(board, square, neighbors))
+         {
+            to = square;
+         }
+      }
+      if (from < 0 || to < 0) {return;}
+
+      int numMines = 0;
+      for (int square = 0; square < board.size(); square++)
+      {
+         if (board.isMine(square))
+         {
+            mines[numMines++] = square == from ? to : square;
+         }
+      }
+      board.reset();
+      board.placeMines(mines);
+      board.reveal(start);
+   }
+
+   /**Returns whether or not any neighbor of a square has been revealed. */
+   private static boolean touchesRevealed(Board board, int square, int[] neighbors)
+   {
+      int count = board.neighbors(square, neighbors);
+      for (int ii = 0; ii < count; ii++)
+      {
+         if (board.isRevealed(neighbors[ii]))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+}
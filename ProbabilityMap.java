@@ -0,0 +1,160 @@
+import java.util.concurrent.*; //For ExecutorService, Executors and Future
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+
+/**Keeps the chance that each hidden square of a board is a mine, worked out again in the background after
+  *every move, for showing over the board. Moves are made and the chances read on the event dispatch thread;
+  *the Solver runs on a thread of its own, so play never waits for it.
+  *
+  *Only the latest move is ever worked out. A move made while the last one is still being worked out stops
+  *that work, and results that have been overtaken by another move are thrown away rather than shown. The
+  *Solver keeps the counts for the groups of the frontier a move did not touch, so each move only costs as
+  *much as the part of the board it changed.
+  */
+public class ProbabilityMap implements BoardDiff.Listener
+{
+   /**The time taken to work out the chances after a move, on the background thread. */
+   private static final Metrics.Histogram SOLVE_TIME = Metrics.histogram("heatmap.nanos");
+
+   /**The moves whose chances were overtaken by a later move before they could be shown. */
+   private static final Metrics.Counter STALE = Metrics.counter("heatmap.stale");
+
+   /**The thread which works out the chances, for every map. */
+   private static final ExecutorService WORKER =
+         Executors.newSingleThreadExecutor(new DaemonThreads("probability map"));
+
+   /**The board whose chances are worked out. */
+   private final Board board;
+
+   /**Called on the event dispatch thread whenever the chances change. */
+   private final Runnable changed;
+
+   /**The solver, only ever used on the worker thread. */
+   private final Solver solver = new Solver();
+
+   /**The number of the latest move, so that work for earlier moves can tell that it has been overtaken. */
+   private final AtomicInteger latest = new AtomicInteger();
+
+   /**Whether or not the chances are being worked out. */
+   private boolean on;
+
+   /**The work for the latest move, or null if there is none. */
+   private Future<?> pending;
+
+   /**The chance that each square is a mine, or null when there is nothing to show. */
+   private float[] chances;
+
+   /**Constructs a map for a board, which works nothing out until it is switched on.
+     *
+     *@param board The board
+     *@param changed Called on the event dispatch thread whenever the chances change, for example to repaint
+     */
+   public ProbabilityMap(Board board, Runnable changed)
+   {
+      this.board = board;
+      this.changed = changed;
+   }
+
+   /**Returns whether or not the chances are being worked out.
+     *
+     *@return whether or not the map is on.
+     */
+   public boolean isOn() {return on;}
+
+   /**Starts working out the chances after every move, starting with the board as it is now, or stops. Must be
+     *called on the event dispatch thread.
+     *
+     *@param on Whether or not the chances should be worked out
+     */
+   public void setOn(boolean on)
+   {
+      this.on = on;
+      board.removeListener(this);
+      if (on)
+      {
+         board.addListener(this);
+         update();
+      }
+      else
+      {
+         cancel();
+         chances = null;
+         changed.run();
+      }
+   }
+
+   /**Returns the chance that a square is a mine, as of the last move worked out.
+     *
+     *@param square The index of the square
+     *@return the chance, from 0 to 1, or -1 if it is not known
+     */
+   public float getChance(int square)
+   {
+      return chances == null ? -1 : chances[square];
+   }
+
+   public void moveMade(Board board, BoardDiff diff)
+   {
+      if (diff.getNumSquares() > 0 || diff.isReset() || diff.isStatusChanged())
+      {
+         update();
+      }
+   }
+
+   /**Starts working out the chances for the board as it is now, stopping any work for an earlier move. */
+   private void update()
+   {
+      cancel();
+      int move = latest.get();
+      if (board.getStatus() != Board.PLAYING) //There is nothing to work out before the first move or after the last.
+      {
+         chances = null;
+         changed.run();
+         return;
+      }
+      Board copy = board.copy(); //The board may change while the copy is being worked out.
+      pending = WORKER.submit(() -> work(copy, move));
+   }
+
+   /**Stops any work for the last move, and makes sure its results are never shown. */
+   private void cancel()
+   {
+      latest.incrementAndGet();
+      if (pending != null)
+      {
+         if (pending.cancel(true))
+         {
+            STALE.increment();
+         }
+         pending = null;
+      }
+   }
+
+   /**Works out the chances for a copy of the board, on the worker thread, and hands them to the event
+     *dispatch thread unless another move has been made since.
+     *
+     *@param copy The copy of the board
+     *@param move The number of the move it was copied after
+     */
+   private void work(Board copy, int move)
+   {
+      long began = Metrics.start();
+      solver.solve(copy);
+      if (latest.get() != move) {return;}
+      float[] result = new float[copy.size()];
+      for (int square = 0; square < result.length; square++)
+      {
+         result[square] = (float) solver.getProbability(square);
+      }
+      SOLVE_TIME.stop(began);
+      SwingUtilities.invokeLater(() ->
+         {
+            if (latest.get() == move)
+            {
+               chances = result;
+               pending = null;
+               changed.run();
+            }
+         });
+   }
+}
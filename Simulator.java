@@ -0,0 +1,338 @@
+import java.util.*; //For Arrays, Locale and SplittableRandom
+import java.util.concurrent.*; //For ForkJoinPool and RecursiveAction
+import java.util.random.RandomGenerator;
+
+/**Plays large numbers of games automatically, on every core, to measure how often a strategy wins on
+  *a given size of board. Each game gets its own random numbers, worked out from a master seed and the
+  *number of the game, so the results are the same however many threads are used.
+  *
+  *Run with: java Simulator (easy|intermediate|hard | height width mines) [games] [seed] [threads] [solver|random]
+  */
+public class Simulator
+{
+   /**Chooses the moves in an automated game. */
+   public interface Strategy
+   {
+      /**Chooses the next move to make. Called repeatedly until the game is over, starting before any
+        *square has been revealed.
+        *
+        *@param board The board being played, which must not be changed
+        *@param random A source of randomness belonging to this game
+        *@return the move, packed with Board.move
+        */
+      int nextMove(Board board, RandomGenerator random);
+   }
+
+   /**A strategy which always reveals a random square which is neither revealed nor flagged. */
+   public static final Strategy RANDOM = new Strategy()
+   {
+      public int nextMove(Board board, RandomGenerator random)
+      {
+         return Board.move(Board.REVEAL, randomHiddenSquare(board, random));
+      }
+   };
+
+   /**The largest number of games handled by one task before the work is split up any further. */
+   private static final int BATCH_SIZE = 64;
+
+   /**The height of the boards played. */
+   private final int height;
+
+   /**The width of the boards played. */
+   private final int width;
+
+   /**The number of mines on the boards played. */
+   private final int numMines;
+
+   /**The strategy used to play every game. Must be safe to use from several threads at once. */
+   private final Strategy strategy;
+
+   /**Constructs a Simulator.
+     *
+     *@param height The height of the boards to play
+     *@param width The width of the boards to play
+     *@param numMines The number of mines on the boards to play
+     *@param strategy The strategy used to play every game, which must be safe to use from several threads at once
+     */
+   public Simulator(int height, int width, int numMines, Strategy strategy)
+   {
+      this.height = height;
+      this.width = width;
+      this.numMines = numMines;
+      this.strategy = strategy;
+   }
+
+   /**Plays a number of games on the common fork-join pool.
+     *
+     *@param games The number of games to play
+     *@param seed The master seed, from which the random numbers for every game are worked out
+     *@return the results of the games
+     */
+   public Result run(int games, long seed)
+   {
+      return run(games, seed, ForkJoinPool.commonPool());
+   }
+
+   /**Plays a number of games on the given pool.
+     *
+     *@param games The number of games to play
+     *@param seed The master seed, from which the random numbers for every game are worked out
+     *@param pool The pool of threads to play the games on
+     *@return the results of the games
+     */
+   public Result run(int games, long seed, ForkJoinPool pool)
+   {
+      boolean[] won = new boolean[games];
+      int[] lengths = new int[games];
+      long start = System.nanoTime();
+      pool.invoke(new Batch(0, games, seed, won, lengths));
+      long elapsed = System.nanoTime() - start;
+      return new Result(won, lengths, elapsed);
+   }
+
+   /**Plays a single game. The same game number and seed always give the same game.
+     *
+     *@param board An unused or reset board of the right size, which is left as the game ended
+     *@param game The number of the game
+     *@param seed The master seed
+     *@return the number of moves made, or -1 if the strategy failed to finish the game
+     */
+   public int play(Board board, int game, long seed)
+   {
+      SplittableRandom random = new SplittableRandom(seedFor(seed, game));
+      board.setRandom(random);
+      int limit = 4 * board.size(); //Enough for any sensible strategy to finish the game.
+      int moves = 0;
+      while (!board.isWon() && !board.isLost())
+      {
+         if (moves == limit) {return -1;}
+         board.apply(strategy.nextMove(board, random));
+         moves++;
+      }
+      return moves;
+   }
+
+   /**Works out the seed for one game from the master seed, by mixing the bits of both (as SplitMix64 does),
+     *so that neighboring games get unrelated seeds.
+     *
+     *@param seed The master seed
+     *@param game The number of the game
+     *@return the seed for the game
+     */
+   public static long seedFor(long seed, int game)
+   {
+      long z = seed + (game + 1L) * 0x9E3779B97F4A7C15L;
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+   }
+
+   /**Picks a random square which is neither revealed nor flagged, for strategies that have to guess.
+     *
+     *@param board The board being played
+     *@param random The source of randomness
+     *@return the index of the square
+     */
+   public static int randomHiddenSquare(Board board, RandomGenerator random)
+   {
+      for (int tries = 0; tries < 32; tries++) //Usually finds one quickly, unless nearly all are revealed.
+      {
+         int square = random.nextInt(board.size());
+         if (!board.isRevealed(square) && !board.isFlagged(square))
+         {
+            return square;
+         }
+      }
+      int hidden = 0;
+      for (int square = 0; square < board.size(); square++)
+      {
+         if (!board.isRevealed(square) && !board.isFlagged(square))
+         {
+            hidden++;
+         }
+      }
+      int choice = random.nextInt(hidden);
+      for (int square = 0; ; square++)
+      {
+         if (!board.isRevealed(square) && !board.isFlagged(square) && choice-- == 0)
+         {
+            return square;
+         }
+      }
+   }
+
+   /**Plays a range of games, splitting the range in half until it is small enough to play on one thread.
+     *The results of each game are stored by game number, so the split makes no difference to them.
+     */
+   private class Batch extends RecursiveAction
+   {
+      private final int from;
+      private final int to;
+      private final long seed;
+      private final boolean[] won;
+      private final int[] lengths;
+
+      Batch(int from, int to, long seed, boolean[] won, int[] lengths)
+      {
+         this.from = from;
+         this.to = to;
+         this.seed = seed;
+         this.won = won;
+         this.lengths = lengths;
+      }
+
+      protected void compute()
+      {
+         if (to - from > BATCH_SIZE)
+         {
+            int middle = (from + to) >>> 1;
+            invokeAll(new Batch(from, middle, seed, won, lengths), new Batch(middle, to, seed, won, lengths));
+            return;
+         }
+         Board board = new Board(height, width, numMines); //One board is reused for the whole batch.
+         for (int game = from; game < to; game++)
+         {
+            board.reset();
+            lengths[game] = play(board, game, seed);
+            won[game] = board.isWon();
+         }
+      }
+   }
+
+   /**The results of a run of games. */
+   public static class Result
+   {
+      /**The number of games played. */
+      private final int games;
+
+      /**The number of games won. */
+      private final int wins;
+
+      /**The number of moves made in each game, sorted from shortest to longest. */
+      private final int[] sortedLengths;
+
+      /**The time taken to play all of the games, in nanoseconds. */
+      private final long elapsed;
+
+      /**Constructs a Result.
+        *
+        *@param won Whether or not each game was won
+        *@param lengths The number of moves made in each game, or -1 if it was not finished
+        *@param elapsed The time taken to play all of the games, in nanoseconds
+        */
+      Result(boolean[] won, int[] lengths, long elapsed)
+      {
+         int count = 0;
+         for (boolean win : won)
+         {
+            if (win)
+            {
+               count++;
+            }
+         }
+         games = won.length;
+         wins = count;
+         sortedLengths = lengths.clone();
+         Arrays.sort(sortedLengths);
+         this.elapsed = elapsed;
+      }
+
+      /**Returns the number of games played.
+        *
+        *@return the number of games played.
+        */
+      public int getGames() {return games;}
+
+      /**Returns the number of games won.
+        *
+        *@return the number of games won.
+        */
+      public int getWins() {return wins;}
+
+      /**Returns the fraction of games won.
+        *
+        *@return the fraction of games won.
+        */
+      public double getWinRate() {return games == 0 ? 0 : (double) wins / games;}
+
+      /**Returns the number of games played per second.
+        *
+        *@return the number of games played per second.
+        */
+      public double getGamesPerSecond() {return games / (elapsed / 1e9);}
+
+      /**Returns the number of moves made in a game at the given percentile. Unfinished games count as -1.
+        *
+        *@param percentile The percentile, from 0 to 100
+        *@return the number of moves
+        */
+      public int getLength(double percentile)
+      {
+         if (games == 0) {return 0;}
+         return sortedLengths[(int) Math.round(percentile / 100 * (games - 1))];
+      }
+
+      /**Returns a one line summary of the results.
+        *
+        *@return a one line summary of the results.
+        */
+      public String toString()
+      {
+         return String.format(Locale.ROOT,
+            "%d games, %.2f%% won, %.0f games/s, moves per game p50 %d p90 %d p99 %d max %d",
+            games, 100 * getWinRate(), getGamesPerSecond(),
+            getLength(50), getLength(90), getLength(99), getLength(100));
+      }
+   }
+
+   /**Plays a number of games with a strategy and prints how often it won, how fast, and how many moves
+     *the games took.
+     *
+     *@param args Nothing, to play Hard; or easy, intermediate or hard, or the height, width and number of
+     *            mines, then optionally the number of games (100000), the seed (1), the number of threads
+     *            (one per processor), and the strategy, solver or random (solver)
+     */
+   public static void main(String[] args)
+   {
+      int next = 0;
+      int height;
+      int width;
+      int numMines;
+      if (args.length > 0 && !Character.isDigit(args[0].charAt(0)))
+      {
+         NatsMinesweeper.Mode mode = NatsMinesweeper.Mode.valueOf(args[next++].toUpperCase(Locale.ROOT));
+         height = mode.getHeight();
+         width = mode.getWidth();
+         numMines = mode.getMines();
+      }
+      else if (args.length >= 3)
+      {
+         height = Integer.parseInt(args[next++]);
+         width = Integer.parseInt(args[next++]);
+         numMines = Integer.parseInt(args[next++]);
+      }
+      else if (args.length > 0) //A number or two could be a size cut short or a number of games, so neither is guessed.
+      {
+         System.out.println("Usage: java Simulator [easy|intermediate|hard | height width mines] [games] [seed] [threads] [solver|random]");
+         return;
+      }
+      else
+      {
+         NatsMinesweeper.Mode mode = NatsMinesweeper.Mode.HARD;
+         height = mode.getHeight();
+         width = mode.getWidth();
+         numMines = mode.getMines();
+      }
+      int games = args.length > next ? Integer.parseInt(args[next++]) : 100000;
+      long seed = args.length > next ? Long.parseLong(args[next++]) : 1;
+      int threads = args.length > next ? Integer.parseInt(args[next++]) : Runtime.getRuntime().availableProcessors();
+
+      Strategy strategy = args.length > next && args[next].equalsIgnoreCase("random") ? RANDOM : Solver.STRATEGY;
+      Simulator simulator = new Simulator(height, width, numMines, strategy);
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      simulator.run(Math.min(games, 1000), seed, pool); //Warms up the compiler before timing anything.
+      System.out.println(height + "x" + width + " board, " + numMines + " mines, " + threads + " threads");
+      System.out.println(simulator.run(games, seed, pool));
+      pool.shutdown();
+   }
+}
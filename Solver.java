@@ -0,0 +1,1088 @@
+import java.util.*; //For Arrays, HashMap and Map
+import java.util.random.RandomGenerator;
+
+/**Works out what can be known about the unrevealed squares of a board from the numbers showing on it.
+  *Each revealed number, less the flags around it, says how many mines are among its unrevealed neighbors.
+  *The squares touching a number form the frontier. First the simple rules are applied over and over: a
+  *number with no mines left makes its neighbors safe, a number with as many mines left as unrevealed
+  *neighbors makes them all mines, and the difference between two overlapping numbers can settle the squares
+  *that only one of them touches. Whatever is left of the frontier is split into groups of squares which share
+  *no numbers, and every arrangement of mines in each group is counted by backtracking. The counts, weighted
+  *by the number of ways to place the remaining mines away from the frontier, give the chance that each
+  *square is a mine.
+  *
+  *Flags are trusted to be correct. A Solver can be reused for any number of boards and keeps its working
+  *space between calls, so solving a board repeatedly does not create much garbage. It also keeps the counts
+  *for the bigger groups, so that solving again after a move only counts the groups the move changed.
+  */
+public class Solver
+{
+   /**The largest group of frontier squares whose arrangements are counted. Larger groups get estimates. */
+   private static final int MAX_GROUP = 256;
+
+   /**The most steps the backtracking may take on one group before giving up and estimating instead. */
+   private static final int MAX_STEPS = 1 << 20;
+
+   /**The smallest group whose counts are kept for the next solve. Smaller groups are counted again, which is
+     *quicker than checking that they have not changed.
+     */
+   private static final int MIN_KEPT_GROUP = 12;
+
+   /**The value of a frontier square that has not been worked out. */
+   private static final byte UNKNOWN = -1;
+
+   /**The value of a frontier square known to be safe. */
+   private static final byte SAFE = 0;
+
+   /**The value of a frontier square known to be a mine. */
+   private static final byte MINE = 1;
+
+   /**A strategy for the Simulator which reveals squares known to be safe whenever there are any, and otherwise
+     *guesses the square least likely to be a mine. Each thread gets its own Solver.
+     */
+   public static final Simulator.Strategy STRATEGY = new Simulator.Strategy()
+   {
+      private final ThreadLocal<Player> players = ThreadLocal.withInitial(Player::new);
+
+      public int nextMove(Board board, RandomGenerator random)
+      {
+         return players.get().nextMove(board, random);
+      }
+   };
+
+   /**The board last solved. */
+   private Board board;
+
+   /**For each square on the board, its number among the frontier squares, or -1 if it is not on the frontier. */
+   private int[] varOf = new int[0];
+
+   /**The largest number of neighbors any square can have on the boards solved so far. */
+   private int maxNeighbors = 8;
+
+   /**The number of frontier squares. */
+   private int numVars;
+
+   /**The index on the board of each frontier square. */
+   private int[] varSquare = new int[64];
+
+   /**What is known about each frontier square: UNKNOWN, SAFE or MINE. */
+   private byte[] value = new byte[64];
+
+   /**The numbers of the constraints each frontier square takes part in, maxNeighbors per square. */
+   private int[] varCons = new int[64 * maxNeighbors];
+
+   /**The number of constraints each frontier square takes part in. */
+   private int[] varNumCons = new int[64];
+
+   /**The number of constraints, one for each revealed number touching an unrevealed, unflagged square. */
+   private int numCons;
+
+   /**The frontier squares each constraint covers, maxNeighbors per constraint. */
+   private int[] consVars = new int[64 * maxNeighbors];
+
+   /**The number of frontier squares each constraint covers. */
+   private int[] consSize = new int[64];
+
+   /**The number of mines among each constraint's squares that have not been worked out. */
+   private int[] consLeft = new int[64];
+
+   /**The number of each constraint's squares that have not been worked out. */
+   private int[] consUnknown = new int[64];
+
+   /**Marks the constraints already waiting to be looked at, or already compared with the current one. */
+   private int[] consMark = new int[64];
+
+   /**A queue of constraints to be looked at, which wraps around. No constraint is in it twice. */
+   private int[] work = new int[64];
+
+   /**Where the next constraint to be looked at is in the queue. */
+   private int workHead;
+
+   /**The number of constraints in the queue. */
+   private int workCount;
+
+   /**The frontier squares left unknown after the simple rules, in groups, each group in the order it is searched. */
+   private int[] order = new int[64];
+
+   /**The number of each frontier square within its group. */
+   private int[] localOf = new int[64];
+
+   /**For each group, where its squares start in order (with one more entry marking the end). */
+   private int[] groupStart = new int[64];
+
+   /**The number of groups. */
+   private int numGroups;
+
+   /**For each group, the number of arrangements with each number of mines, or null if it was only estimated. */
+   private double[][] groupSolutions = new double[64][];
+
+   /**For each group, the number of arrangements with each number of mines in which each square is a mine,
+     *stored as square * (group size + 1) + mines.
+     */
+   private double[][] groupCounts = new double[64][];
+
+   /**The chance that each frontier square is a mine. */
+   private double[] varProbability = new double[64];
+
+   /**The chance that each unrevealed square away from the frontier is a mine. */
+   private double interiorProbability;
+
+   /**The number of unrevealed, unflagged squares away from the frontier. */
+   private int numInterior;
+
+   /**Whether or not the flags and numbers on the board contradict each other. */
+   private boolean inconsistent;
+
+   /**The squares known to be safe, which are neither revealed nor flagged. */
+   private int[] safe = new int[64];
+
+   /**The number of squares known to be safe. */
+   private int numSafe;
+
+   /**The squares known to be mines, which are not flagged. */
+   private int[] mines = new int[64];
+
+   /**The number of squares known to be mines. */
+   private int numMines;
+
+   /**The logarithms of the factorials, for counting the ways to place mines away from the frontier. */
+   private double[] logFactorial = {0};
+
+   /**Holds the neighbors of a square while they are looked at. */
+   private int[] neighbors = new int[maxNeighbors];
+
+   /**The number of backtracking steps taken on the current group. */
+   private int steps;
+
+   /**The number of mines placed so far in the current arrangement. */
+   private int placed;
+
+   /**The counts of the groups of the last solve big enough to keep, by the hash of their signatures. */
+   private Map<Integer, KeptGroup> kept = new HashMap<Integer, KeptGroup>();
+
+   /**The groups kept so far by this solve, which take the place of kept once it has finished. */
+   private Map<Integer, KeptGroup> keeping = new HashMap<Integer, KeptGroup>();
+
+   /**Whether or not this solve was stopped by an interrupt. */
+   private boolean stopped;
+
+   /**Works out everything that can be known about the board as it is now. The results can be read with the
+     *other methods until the next call. If the thread is interrupted while the arrangements are being counted,
+     *this gives up early and its results mean nothing; the thread stays interrupted.
+     *
+     *@param board The board, which must have been started
+     */
+   public void solve(Board board)
+   {
+      this.board = board;
+      if (board.getMaxNeighbors() > maxNeighbors)
+      {
+         maxNeighbors = board.getMaxNeighbors();
+         neighbors = new int[maxNeighbors];
+         varCons = new int[varSquare.length * maxNeighbors];
+         consVars = new int[consSize.length * maxNeighbors];
+      }
+      numSafe = 0;
+      numMines = 0;
+      inconsistent = false;
+      stopped = false;
+      findConstraints();
+      if (!propagate())
+      {
+         inconsistent = true;
+         guessBlindly();
+         return;
+      }
+      findGroups();
+      boolean exact = true;
+      for (int group = 0; group < numGroups; group++)
+      {
+         if (!countArrangements(group))
+         {
+            exact = false;
+         }
+      }
+      if (stopped)
+      {
+         keeping.clear();
+         return;
+      }
+      Map<Integer, KeptGroup> swap = kept; //The groups this solve did not have are dropped.
+      kept = keeping;
+      keeping = swap;
+      keeping.clear();
+      if (!exact || !weighArrangements())
+      {
+         estimate();
+      }
+      collectResults();
+   }
+
+   /**Returns whether or not the given square is known to be safe. Revealed squares are safe.
+     *
+     *@param square The index of the square
+     *@return whether or not the square is known to be safe
+     */
+   public boolean isSafe(int square)
+   {
+      if (board.isRevealed(square)) {return true;}
+      if (board.isFlagged(square) || inconsistent) {return false;}
+      int var = varOf[square];
+      return var >= 0 ? varProbability[var] == 0 : interiorProbability == 0;
+   }
+
+   /**Returns whether or not the given square is known to be a mine. Flagged squares count as mines.
+     *
+     *@param square The index of the square
+     *@return whether or not the square is known to be a mine
+     */
+   public boolean isMine(int square)
+   {
+      if (board.isFlagged(square)) {return true;}
+      if (board.isRevealed(square) || inconsistent) {return false;}
+      int var = varOf[square];
+      return var >= 0 ? varProbability[var] == 1 : interiorProbability == 1;
+   }
+
+   /**Returns the chance that the given square is a mine, from 0 to 1.
+     *
+     *@param square The index of the square
+     *@return the chance that the square is a mine
+     */
+   public double getProbability(int square)
+   {
+      if (board.isRevealed(square)) {return 0;}
+      if (board.isFlagged(square)) {return 1;}
+      int var = varOf[square];
+      return var >= 0 ? varProbability[var] : interiorProbability;
+   }
+
+   /**Returns whether or not the flags and numbers on the board contradict each other, in which case
+     *nothing is known for sure and the probabilities are only the overall density of mines.
+     *
+     *@return whether or not the board contradicts itself.
+     */
+   public boolean isInconsistent() {return inconsistent;}
+
+   /**Returns the number of squares known to be safe which are neither revealed nor flagged.
+     *
+     *@return the number of squares known to be safe.
+     */
+   public int getNumSafe() {return numSafe;}
+
+   /**Returns one of the squares known to be safe.
+     *
+     *@param ii Which of the safe squares to return, from 0 up to getNumSafe()
+     *@return the index of the square
+     */
+   public int getSafe(int ii) {return safe[ii];}
+
+   /**Returns the number of squares known to be mines which are not flagged.
+     *
+     *@return the number of squares known to be mines.
+     */
+   public int getNumMines() {return numMines;}
+
+   /**Returns one of the squares known to be mines.
+     *
+     *@param ii Which of the mines to return, from 0 up to getNumMines()
+     *@return the index of the square
+     */
+   public int getMine(int ii) {return mines[ii];}
+
+   /**Picks the unrevealed, unflagged square least likely to be a mine, choosing at random among equally
+     *likely squares.
+     *
+     *@param random The source of randomness
+     *@return the index of the square, or -1 if there are no unrevealed, unflagged squares
+     */
+   public int bestGuess(RandomGenerator random)
+   {
+      int best = -1;
+      double lowest = 2;
+      int ties = 0;
+      for (int square = 0; square < board.size(); square++)
+      {
+         if (board.isRevealed(square) || board.isFlagged(square)) {continue;}
+         double probability = getProbability(square);
+         if (probability < lowest)
+         {
+            best = square;
+            lowest = probability;
+            ties = 1;
+         }
+         else if (probability == lowest && random.nextInt(++ties) == 0)
+         {
+            best = square;
+         }
+      }
+      return best;
+   }
+
+   /**Finds the frontier and the constraint from each revealed number touching it. */
+   private void findConstraints()
+   {
+      int size = board.size();
+      if (varOf.length < size)
+      {
+         varOf = new int[size];
+         Arrays.fill(varOf, -1);
+      }
+      else
+      {
+         for (int var = 0; var < numVars; var++)
+         {
+            varOf[varSquare[var]] = -1; //Only the squares used last time need clearing.
+         }
+      }
+      numVars = 0;
+      numCons = 0;
+      numInterior = 0;
+      for (int square = 0; square < size; square++)
+      {
+         if (!board.isRevealed(square))
+         {
+            if (!board.isFlagged(square))
+            {
+               numInterior++; //The frontier squares are taken back out below.
+            }
+            continue;
+         }
+         if (board.isMine(square)) {continue;}
+         int count = board.neighbors(square, neighbors);
+         int hidden = 0;
+         int flags = 0;
+         for (int ii = 0; ii < count; ii++)
+         {
+            if (board.isFlagged(neighbors[ii]))
+            {
+               flags++;
+            }
+            else if (!board.isRevealed(neighbors[ii]))
+            {
+               neighbors[hidden++] = neighbors[ii];
+            }
+         }
+         if (hidden == 0) {continue;}
+         int cons = addConstraint(board.getAdjacentMines(square) - flags);
+         for (int ii = 0; ii < hidden; ii++)
+         {
+            int var = varOf[neighbors[ii]];
+            if (var < 0)
+            {
+               var = addVar(neighbors[ii]);
+            }
+            consVars[cons * maxNeighbors + consSize[cons]++] = var;
+            varCons[var * maxNeighbors + varNumCons[var]++] = cons;
+         }
+         consUnknown[cons] = hidden;
+      }
+      numInterior -= numVars;
+   }
+
+   /**Adds a constraint, making room for it if needed.
+     *
+     *@param need The number of mines among its squares
+     *@return the number of the new constraint
+     */
+   private int addConstraint(int need)
+   {
+      if (numCons == consSize.length)
+      {
+         int length = 2 * numCons;
+         consVars = Arrays.copyOf(consVars, length * maxNeighbors);
+         consSize = Arrays.copyOf(consSize, length);
+         consLeft = Arrays.copyOf(consLeft, length);
+         consUnknown = Arrays.copyOf(consUnknown, length);
+         consMark = Arrays.copyOf(consMark, length);
+         work = Arrays.copyOf(work, length);
+      }
+      consSize[numCons] = 0;
+      consLeft[numCons] = need;
+      consMark[numCons] = 0;
+      return numCons++;
+   }
+
+   /**Adds a square to the frontier, making room for it if needed.
+     *
+     *@param square The index of the square on the board
+     *@return the square's number among the frontier squares
+     */
+   private int addVar(int square)
+   {
+      if (numVars == varSquare.length)
+      {
+         int length = 2 * numVars;
+         varSquare = Arrays.copyOf(varSquare, length);
+         value = Arrays.copyOf(value, length);
+         varCons = Arrays.copyOf(varCons, length * maxNeighbors);
+         varNumCons = Arrays.copyOf(varNumCons, length);
+         order = Arrays.copyOf(order, length);
+         localOf = Arrays.copyOf(localOf, length);
+         varProbability = Arrays.copyOf(varProbability, length);
+      }
+      varSquare[numVars] = square;
+      value[numVars] = UNKNOWN;
+      varNumCons[numVars] = 0;
+      varOf[square] = numVars;
+      return numVars++;
+   }
+
+   /**Applies the simple rules until nothing more can be worked out from them.
+     *
+     *@return false if the numbers contradict each other
+     */
+   private boolean propagate()
+   {
+      workHead = 0;
+      workCount = 0;
+      for (int cons = 0; cons < numCons; cons++)
+      {
+         queue(cons);
+      }
+      while (true)
+      {
+         while (workCount > 0) //The single constraint rules.
+         {
+            int cons = work[workHead];
+            workHead = workHead + 1 == numCons ? 0 : workHead + 1;
+            workCount--;
+            consMark[cons] = 0;
+            int left = consLeft[cons];
+            int unknown = consUnknown[cons];
+            if (left < 0 || left > unknown) {return false;}
+            if (unknown == 0 || (left != 0 && left != unknown)) {continue;}
+            byte settled = left == 0 ? SAFE : MINE;
+            for (int ii = 0; ii < consSize[cons]; ii++)
+            {
+               int var = consVars[cons * maxNeighbors + ii];
+               if (value[var] == UNKNOWN)
+               {
+                  settle(var, settled);
+               }
+            }
+         }
+         //The pair rule, for overlapping constraints. Anything it settles sends the loop back to the single rules.
+         boolean changed = false;
+         for (int first = 0; first < numCons; first++)
+         {
+            if (consUnknown[first] == 0) {continue;}
+            for (int ii = 0; ii < consSize[first]; ii++)
+            {
+               int var = consVars[first * maxNeighbors + ii];
+               for (int jj = 0; jj < varNumCons[var]; jj++)
+               {
+                  int second = varCons[var * maxNeighbors + jj];
+                  if (second == first || consMark[second] == -first - 1) {continue;}
+                  if (consMark[second] <= 0) //A queued constraint must keep its mark, or it could be queued twice.
+                  {
+                     consMark[second] = -first - 1; //Compares each overlapping pair only once from this side.
+                  }
+                  if (comparePair(first, second))
+                  {
+                     changed = true;
+                  }
+               }
+            }
+         }
+         for (int cons = 0; cons < numCons; cons++)
+         {
+            if (consMark[cons] < 0)
+            {
+               consMark[cons] = 0;
+            }
+         }
+         if (!changed) {return true;}
+      }
+   }
+
+   /**Compares two overlapping constraints. If the second needs exactly as many more mines than the first as it
+     *has squares the first does not cover, those squares are all mines and the first's other squares are safe.
+     *
+     *This includes the case where the first covers only squares the second does too and needs as many mines.
+     *
+     *@param first The first constraint
+     *@param second The second constraint
+     *@return whether or not any square was settled
+     */
+   private boolean comparePair(int first, int second)
+   {
+      int onlySecond = 0;
+      for (int ii = 0; ii < consSize[second]; ii++)
+      {
+         int var = consVars[second * maxNeighbors + ii];
+         if (value[var] == UNKNOWN && !covers(first, var))
+         {
+            onlySecond++;
+         }
+      }
+      if (consLeft[second] - consLeft[first] != onlySecond) {return false;}
+      boolean changed = false;
+      for (int ii = 0; ii < consSize[second]; ii++)
+      {
+         int var = consVars[second * maxNeighbors + ii];
+         if (value[var] == UNKNOWN && !covers(first, var))
+         {
+            settle(var, MINE);
+            changed = true;
+         }
+      }
+      for (int ii = 0; ii < consSize[first]; ii++)
+      {
+         int var = consVars[first * maxNeighbors + ii];
+         if (value[var] == UNKNOWN && !covers(second, var))
+         {
+            settle(var, SAFE);
+            changed = true;
+         }
+      }
+      return changed;
+   }
+
+   /**Returns whether or not a constraint covers a frontier square. */
+   private boolean covers(int cons, int var)
+   {
+      for (int ii = 0; ii < consSize[cons]; ii++)
+      {
+         if (consVars[cons * maxNeighbors + ii] == var)
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**Settles the value of a frontier square, updating its constraints and queueing them to be looked at again.
+     *
+     *@param var The frontier square
+     *@param settled SAFE or MINE
+     */
+   private void settle(int var, byte settled)
+   {
+      value[var] = settled;
+      for (int ii = 0; ii < varNumCons[var]; ii++)
+      {
+         int cons = varCons[var * maxNeighbors + ii];
+         consUnknown[cons]--;
+         consLeft[cons] -= settled;
+         if (consMark[cons] <= 0)
+         {
+            queue(cons);
+         }
+      }
+   }
+
+   /**Adds a constraint to the end of the queue of constraints to be looked at. */
+   private void queue(int cons)
+   {
+      consMark[cons] = 1;
+      int tail = workHead + workCount;
+      work[tail >= numCons ? tail - numCons : tail] = cons;
+      workCount++;
+   }
+
+   /**Splits the frontier squares still unknown into groups which share no constraints. Each group is put
+     *in breadth first order, so that the backtracking finishes off each constraint as soon as possible.
+     */
+   private void findGroups()
+   {
+      numGroups = 0;
+      int end = 0;
+      for (int var = 0; var < numVars; var++)
+      {
+         localOf[var] = -1;
+      }
+      for (int start = 0; start < numVars; start++)
+      {
+         if (value[start] != UNKNOWN || localOf[start] >= 0) {continue;}
+         if (numGroups + 1 >= groupStart.length)
+         {
+            groupStart = Arrays.copyOf(groupStart, 2 * groupStart.length);
+            groupSolutions = Arrays.copyOf(groupSolutions, 2 * groupSolutions.length);
+            groupCounts = Arrays.copyOf(groupCounts, 2 * groupCounts.length);
+         }
+         groupStart[numGroups] = end;
+         int head = end;
+         localOf[start] = 0;
+         order[end++] = start;
+         while (head < end)
+         {
+            int var = order[head++];
+            for (int ii = 0; ii < varNumCons[var]; ii++)
+            {
+               int cons = varCons[var * maxNeighbors + ii];
+               for (int jj = 0; jj < consSize[cons]; jj++)
+               {
+                  int other = consVars[cons * maxNeighbors + jj];
+                  if (value[other] == UNKNOWN && localOf[other] < 0)
+                  {
+                     localOf[other] = end - groupStart[numGroups];
+                     order[end++] = other;
+                  }
+               }
+            }
+         }
+         numGroups++;
+      }
+      groupStart[numGroups] = end;
+   }
+
+   /**Counts the arrangements of mines in a group which satisfy all of its constraints, by how many mines they use.
+     *
+     *@param group The number of the group
+     *@return false if the group was too large to count, and must be estimated
+     */
+   private boolean countArrangements(int group)
+   {
+      int size = groupStart[group + 1] - groupStart[group];
+      groupSolutions[group] = null;
+      if (size > MAX_GROUP) {return false;}
+      int[] signature = null;
+      if (size >= MIN_KEPT_GROUP)
+      {
+         signature = signature(group);
+         KeptGroup old = kept.get(Arrays.hashCode(signature));
+         if (old != null && Arrays.equals(old.signature, signature)) //Nothing it depends on has changed.
+         {
+            keeping.put(Arrays.hashCode(signature), old);
+            groupSolutions[group] = old.solutions;
+            groupCounts[group] = old.counts;
+            return old.solutions != null;
+         }
+      }
+      double[] solutions = new double[size + 1];
+      double[] counts = new double[size * (size + 1)];
+      steps = 0;
+      placed = 0;
+      boolean counted = search(group, groupStart[group], solutions, counts);
+      if (stopped) {return false;}
+      if (signature != null) //Groups too slow to count are kept too, so that they are not tried again.
+      {
+         keeping.put(Arrays.hashCode(signature),
+            new KeptGroup(signature, counted ? solutions : null, counted ? counts : null));
+      }
+      if (!counted) {return false;}
+      groupSolutions[group] = solutions;
+      groupCounts[group] = counts;
+      return true;
+   }
+
+   /**Describes everything the arrangements of a group depend on: the square of each of its squares, in the
+     *order they are searched, then for each constraint of each square, the mines it has left and which of the
+     *group's squares it covers. Two groups with the same signature have the same counts.
+     *
+     *@param group The number of the group
+     *@return the signature
+     */
+   private int[] signature(int group)
+   {
+      int length = 0;
+      for (int ii = groupStart[group]; ii < groupStart[group + 1]; ii++)
+      {
+         int var = order[ii];
+         length++;
+         for (int jj = 0; jj < varNumCons[var]; jj++)
+         {
+            length += 2 + consSize[varCons[var * maxNeighbors + jj]];
+         }
+      }
+      int[] signature = new int[length];
+      int next = 0;
+      for (int ii = groupStart[group]; ii < groupStart[group + 1]; ii++)
+      {
+         signature[next++] = varSquare[order[ii]];
+      }
+      for (int ii = groupStart[group]; ii < groupStart[group + 1]; ii++)
+      {
+         int var = order[ii];
+         for (int jj = 0; jj < varNumCons[var]; jj++)
+         {
+            int cons = varCons[var * maxNeighbors + jj];
+            signature[next++] = consLeft[cons];
+            for (int kk = 0; kk < consSize[cons]; kk++)
+            {
+               int other = consVars[cons * maxNeighbors + kk];
+               if (value[other] == UNKNOWN)
+               {
+                  signature[next++] = localOf[other];
+               }
+            }
+            signature[next++] = -1;
+         }
+      }
+      return next == length ? signature : Arrays.copyOf(signature, next);
+   }
+
+   /**Tries both values for the next square of a group, and on to the end of the group.
+     *
+     *@param group The number of the group
+     *@param next Where the next square to try is in order
+     *@param solutions The number of arrangements by number of mines, to be added to
+     *@param counts The number of arrangements in which each square is a mine, by number of mines, to be added to
+     *@return false if the search took too many steps
+     */
+   private boolean search(int group, int next, double[] solutions, double[] counts)
+   {
+      if (++steps > MAX_STEPS) {return false;}
+      if ((steps & 0xFFF) == 0 && Thread.currentThread().isInterrupted())
+      {
+         stopped = true;
+         return false;
+      }
+      int end = groupStart[group + 1];
+      if (next == end)
+      {
+         solutions[placed]++;
+         int stride = end - groupStart[group] + 1;
+         for (int ii = groupStart[group]; ii < end; ii++)
+         {
+            int var = order[ii];
+            if (value[var] == MINE)
+            {
+               counts[localOf[var] * stride + placed]++;
+            }
+         }
+         return true;
+      }
+      int var = order[next];
+      for (byte tried = SAFE; tried <= MINE; tried++)
+      {
+         if (assign(var, tried))
+         {
+            placed += tried;
+            boolean finished = search(group, next + 1, solutions, counts);
+            placed -= tried;
+            unassign(var, tried);
+            if (!finished) {return false;}
+         }
+      }
+      return true;
+   }
+
+   /**Gives a frontier square a value during the search, if its constraints allow it.
+     *
+     *@return false (with nothing changed) if the value breaks one of the square's constraints
+     */
+   private boolean assign(int var, byte tried)
+   {
+      for (int ii = 0; ii < varNumCons[var]; ii++)
+      {
+         int cons = varCons[var * maxNeighbors + ii];
+         int left = consLeft[cons] - tried;
+         if (left < 0 || left > consUnknown[cons] - 1) {return false;}
+      }
+      value[var] = tried;
+      for (int ii = 0; ii < varNumCons[var]; ii++)
+      {
+         int cons = varCons[var * maxNeighbors + ii];
+         consLeft[cons] -= tried;
+         consUnknown[cons]--;
+      }
+      return true;
+   }
+
+   /**Takes back a value given by assign. */
+   private void unassign(int var, byte tried)
+   {
+      value[var] = UNKNOWN;
+      for (int ii = 0; ii < varNumCons[var]; ii++)
+      {
+         int cons = varCons[var * maxNeighbors + ii];
+         consLeft[cons] += tried;
+         consUnknown[cons]++;
+      }
+   }
+
+   /**Combines the counts for every group with the number of ways to place the rest of the mines away from the
+     *frontier, to find the chance that each square is a mine.
+     *
+     *@return false if no arrangement fits the number of mines left, so the board can only be estimated
+     */
+   private boolean weighArrangements()
+   {
+      int left = board.getMinesLeft();
+      for (int var = 0; var < numVars; var++)
+      {
+         if (value[var] == MINE)
+         {
+            left--;
+         }
+      }
+      //The number of arrangements of the whole frontier by number of mines, built up a group at a time.
+      double[][] before = new double[numGroups + 1][];
+      before[0] = new double[] {1};
+      for (int group = 0; group < numGroups; group++)
+      {
+         before[group + 1] = convolve(before[group], groupSolutions[group]);
+      }
+      double[][] after = new double[numGroups + 1][];
+      after[numGroups] = new double[] {1};
+      for (int group = numGroups - 1; group >= 0; group--)
+      {
+         after[group] = convolve(groupSolutions[group], after[group + 1]);
+      }
+      double[] total = before[numGroups];
+
+      //weight[k] is the number of ways to place the other mines away from the frontier, when the frontier has k.
+      //They are scaled down together, since only their ratios matter.
+      double[] weight = new double[total.length];
+      double largest = Double.NEGATIVE_INFINITY;
+      for (int k = 0; k < total.length; k++)
+      {
+         weight[k] = k <= left && left - k <= numInterior ? logChoose(numInterior, left - k) : Double.NEGATIVE_INFINITY;
+         if (total[k] != 0)
+         {
+            largest = Math.max(largest, weight[k]);
+         }
+      }
+      if (largest == Double.NEGATIVE_INFINITY) {return false;}
+      double sum = 0;
+      double interiorMines = 0;
+      for (int k = 0; k < total.length; k++)
+      {
+         weight[k] = Math.exp(weight[k] - largest);
+         sum += total[k] * weight[k];
+         interiorMines += total[k] * weight[k] * (left - k);
+      }
+      if (sum == 0) {return false;}
+      interiorProbability = numInterior == 0 ? 0 : interiorMines / sum / numInterior;
+
+      for (int group = 0; group < numGroups; group++)
+      {
+         double[] others = convolve(before[group], after[group + 1]);
+         int size = groupStart[group + 1] - groupStart[group];
+         //groupWeight[m] is the total weight of every arrangement of the other groups, when this one has m mines.
+         double[] groupWeight = new double[size + 1];
+         for (int m = 0; m <= size; m++)
+         {
+            for (int j = 0; j < others.length; j++)
+            {
+               groupWeight[m] += others[j] * weight[m + j];
+            }
+         }
+         double[] counts = groupCounts[group];
+         for (int ii = groupStart[group]; ii < groupStart[group + 1]; ii++)
+         {
+            int var = order[ii];
+            double mine = 0;
+            for (int m = 0; m <= size; m++)
+            {
+               mine += counts[localOf[var] * (size + 1) + m] * groupWeight[m];
+            }
+            varProbability[var] = mine / sum;
+         }
+      }
+      for (int var = 0; var < numVars; var++)
+      {
+         if (value[var] != UNKNOWN)
+         {
+            varProbability[var] = value[var];
+         }
+      }
+      return true;
+   }
+
+   /**Estimates the chances when they could not be counted exactly, either because a group was too large or
+     *because no arrangement fits the number of mines left. Groups which were counted use their own counts,
+     *and anything settled for certain by a group's constraints alone is still certain.
+     */
+   private void estimate()
+   {
+      double expected = 0;
+      for (int group = 0; group < numGroups; group++)
+      {
+         int size = groupStart[group + 1] - groupStart[group];
+         double[] solutions = groupSolutions[group];
+         double sum = 0;
+         if (solutions != null)
+         {
+            for (double count : solutions)
+            {
+               sum += count;
+            }
+         }
+         for (int ii = groupStart[group]; ii < groupStart[group + 1]; ii++)
+         {
+            int var = order[ii];
+            if (solutions != null && sum > 0)
+            {
+               double mine = 0;
+               for (int m = 0; m <= size; m++)
+               {
+                  mine += groupCounts[group][localOf[var] * (size + 1) + m];
+               }
+               varProbability[var] = mine / sum;
+            }
+            else //The average of what each of its constraints suggests.
+            {
+               double chance = 0;
+               for (int jj = 0; jj < varNumCons[var]; jj++)
+               {
+                  int cons = varCons[var * maxNeighbors + jj];
+                  chance += consUnknown[cons] == 0 ? 0 : (double) consLeft[cons] / consUnknown[cons];
+               }
+               varProbability[var] = Math.min(0.99, Math.max(0.01, chance / varNumCons[var]));
+            }
+            expected += varProbability[var];
+         }
+      }
+      int left = board.getMinesLeft();
+      for (int var = 0; var < numVars; var++)
+      {
+         if (value[var] != UNKNOWN)
+         {
+            varProbability[var] = value[var];
+            left -= value[var];
+         }
+      }
+      //Away from the frontier, nothing is certain unless the frontier has used up (nearly) every mine.
+      double chance = numInterior == 0 ? 0 : (left - expected) / numInterior;
+      interiorProbability = left <= 0 ? 0 : Math.min(0.99, Math.max(0.01, chance));
+   }
+
+   /**Used when the board contradicts itself. Nothing is certain, and every unrevealed square is as likely
+     *to be a mine as any other.
+     */
+   private void guessBlindly()
+   {
+      int hidden = numInterior + numVars;
+      double chance = hidden == 0 ? 0 : Math.min(0.99, Math.max(0.01, (double) board.getMinesLeft() / hidden));
+      Arrays.fill(varProbability, 0, numVars, chance);
+      interiorProbability = chance;
+   }
+
+   /**Lists the squares known to be safe or mines. */
+   private void collectResults()
+   {
+      for (int square = 0; square < board.size(); square++)
+      {
+         if (board.isRevealed(square) || board.isFlagged(square)) {continue;}
+         int var = varOf[square];
+         double probability = var >= 0 ? varProbability[var] : interiorProbability;
+         if (probability == 0)
+         {
+            if (numSafe == safe.length)
+            {
+               safe = Arrays.copyOf(safe, 2 * numSafe);
+            }
+            safe[numSafe++] = square;
+         }
+         else if (probability == 1)
+         {
+            if (numMines == mines.length)
+            {
+               mines = Arrays.copyOf(mines, 2 * numMines);
+            }
+            mines[numMines++] = square;
+         }
+      }
+   }
+
+   /**Convolves two lists of counts indexed by number of mines, giving the counts for both together. */
+   private static double[] convolve(double[] first, double[] second)
+   {
+      double[] result = new double[first.length + second.length - 1];
+      for (int ii = 0; ii < first.length; ii++)
+      {
+         if (first[ii] == 0) {continue;}
+         for (int jj = 0; jj < second.length; jj++)
+         {
+            result[ii + jj] += first[ii] * second[jj];
+         }
+      }
+      return result;
+   }
+
+   /**Returns the logarithm of n choose k. */
+   private double logChoose(int n, int k)
+   {
+      if (logFactorial.length <= n)
+      {
+         int old = logFactorial.length;
+         logFactorial = Arrays.copyOf(logFactorial, Math.max(n + 1, 2 * old));
+         for (int ii = old; ii < logFactorial.length; ii++)
+         {
+            logFactorial[ii] = logFactorial[ii - 1] + Math.log(ii);
+         }
+      }
+      return logFactorial[n] - logFactorial[k] - logFactorial[n - k];
+   }
+
+   /**The counts of a group, kept from one solve to the next. */
+   private static class KeptGroup
+   {
+      /**What the counts depend on, as made by signature. */
+      final int[] signature;
+
+      /**The number of arrangements by number of mines, or null if the group took too many steps to count. */
+      final double[] solutions;
+
+      /**The number of arrangements in which each square is a mine, by number of mines. */
+      final double[] counts;
+
+      KeptGroup(int[] signature, double[] solutions, double[] counts)
+      {
+         this.signature = signature;
+         this.solutions = solutions;
+         this.counts = counts;
+      }
+   }
+
+   /**Plays one game at a time for STRATEGY. Remembers the safe squares found by each solve, so that the board
+     *is only solved again once they have all been revealed.
+     */
+   private static class Player
+   {
+      /**The solver used for every move. */
+      private final Solver solver = new Solver();
+
+      /**The safe squares found by the last solve. */
+      private int[] pending = new int[64];
+
+      /**The number of safe squares found by the last solve. */
+      private int numPending;
+
+      /**How many of the safe squares have been used. */
+      private int next;
+
+      /**Chooses the next move.
+        *
+        *@param board The board being played
+        *@param random The source of randomness for this game
+        *@return the move, packed with Board.move
+        */
+      public int nextMove(Board board, RandomGenerator random)
+      {
+         if (!board.isStarted())
+         {
+            numPending = 0; //A new game.
+            next = 0;
+            return Board.move(Board.REVEAL, Simulator.randomHiddenSquare(board, random));
+         }
+         while (next < numPending) //Some may have been revealed along with others since.
+         {
+            int square = pending[next++];
+            if (!board.isRevealed(square))
+            {
+               return Board.move(Board.REVEAL, square);
+            }
+         }
+         solver.solve(board);
+         numPending = solver.getNumSafe();
+         next = 0;
+         if (numPending > 0)
+         {
+            if (pending.length < numPending)
+            {
+               pending = new int[Math.max(numPending, 2 * pending.length)];
+            }
+            for (int ii = 0; ii < numPending; ii++)
+            {
+               pending[ii] = solver.getSafe(ii);
+            }
+            return Board.move(Board.REVEAL, pending[next++]);
+         }
+         return Board.move(Board.REVEAL, solver.bestGuess(random));
+      }
+   }
+}
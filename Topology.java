@@ -0,0 +1,63 @@
+/**How the squares of a board are connected to each other. Squares are identified by a single index, from 0
+  *up to size(), and a topology says which squares are each square's neighbors, so that the same game can be
+  *played on boards of other shapes: GridTopology for the usual board, TorusTopology, HexTopology and
+  *CubeTopology. Every topology lays its squares out in rows, so that boards of any shape can be drawn and
+  *stored the same way.
+  */
+public interface Topology
+{
+   /**Returns the number of rows the board is laid out in, for drawing and for row * width + col indices.
+     *
+     *@return the number of rows.
+     */
+   int getHeight();
+
+   /**Returns the number of squares in each row the board is laid out in.
+     *
+     *@return the number of squares in each row.
+     */
+   int getWidth();
+
+   /**Returns the number of squares.
+     *
+     *@return the number of squares.
+     */
+   default int size() {return getHeight() * getWidth();}
+
+   /**Returns the largest number of neighbors any square can have.
+     *
+     *@return the largest number of neighbors.
+     */
+   int maxNeighbors();
+
+   /**Finds all of the squares adjacent to the given one.
+     *
+     *@param square The index of the square
+     *@param neighbors An array of length at least maxNeighbors() to be filled with the indices of the adjacent squares
+     *@return the number of adjacent squares
+     */
+   int neighbors(int square, int[] neighbors);
+
+   /**Works out the number of mines adjacent to every square at once. This version adds each mine to the
+     *count of each of its neighbors; topologies whose squares line up in rows can do much better.
+     *
+     *@param mines One bit per square, set if that square is a mine
+     *@param counts Filled with the number of mines adjacent to each square
+     */
+   default void countMines(long[] mines, byte[] counts)
+   {
+      java.util.Arrays.fill(counts, (byte) 0);
+      int[] neighbors = new int[maxNeighbors()];
+      for (int word = 0; word < mines.length; word++)
+      {
+         for (long bits = mines[word]; bits != 0; bits &= bits - 1)
+         {
+            int count = neighbors((word << 6) + Long.numberOfTrailingZeros(bits), neighbors);
+            for (int ii = 0; ii < count; ii++)
+            {
+               counts[neighbors[ii]]++;
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,69 @@
+/**A rectangular board whose edges wrap around, so that the top row touches the bottom row and the left column
+  *touches the right column, as on the surface of a doughnut. Every square has exactly eight neighbors.
+  *
+  *As in GridTopology, neighbors are found from tables of index offsets worked out once per board, one for
+  *each combination of edges a square can be on; on an edge, the offsets reach around to the far side.
+  */
+public class TorusTopology implements Topology
+{
+   //The edges a square can be on, combined into an index into the tables of offsets.
+   private static final int TOP = 1;
+   private static final int BOTTOM = 2;
+   private static final int LEFT = 4;
+   private static final int RIGHT = 8;
+
+   private final int height;
+   private final int width;
+
+   /**The index offsets of the neighbors of a square, for each combination of edges it is on. */
+   private final int[][] offsets = new int[16][];
+
+   /**Constructs the topology of a board of the given size.
+     *
+     *@param height The height of the board, at least 3 so that no square is its own neighbor twice over
+     *@param width The width of the board, at least 3
+     */
+   public TorusTopology(int height, int width)
+   {
+      if (height < 3 || width < 3)
+      {
+         throw new IllegalArgumentException("A torus must be at least 3x3, not " + height + "x" + width);
+      }
+      this.height = height;
+      this.width = width;
+      for (int edges = 0; edges < offsets.length; edges++)
+      {
+         offsets[edges] = new int[GridTopology.NEIGHBOR_ROWS.length];
+         for (int ii = 0; ii < GridTopology.NEIGHBOR_ROWS.length; ii++)
+         {
+            int rows = GridTopology.NEIGHBOR_ROWS[ii];
+            int cols = GridTopology.NEIGHBOR_COLS[ii];
+            if (rows < 0 && (edges & TOP) != 0) {rows += height;}
+            if (rows > 0 && (edges & BOTTOM) != 0) {rows -= height;}
+            if (cols < 0 && (edges & LEFT) != 0) {cols += width;}
+            if (cols > 0 && (edges & RIGHT) != 0) {cols -= width;}
+            offsets[edges][ii] = rows * width + cols;
+         }
+      }
+   }
+
+   public int getHeight() {return height;}
+
+   public int getWidth() {return width;}
+
+   public int maxNeighbors() {return GridTopology.NEIGHBOR_ROWS.length;}
+
+   public int neighbors(int square, int[] neighbors)
+   {
+      int row = square / width;
+      int col = square - row * width;
+      int edges = (row == 0 ? TOP : 0) | (row == height - 1 ? BOTTOM : 0)
+         | (col == 0 ? LEFT : 0) | (col == width - 1 ? RIGHT : 0);
+      int[] table = offsets[edges];
+      for (int ii = 0; ii < table.length; ii++)
+      {
+         neighbors[ii] = square + table[ii];
+      }
+      return table.length;
+   }
+}
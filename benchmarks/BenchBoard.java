@@ -0,0 +1,26 @@
+import minesweeper.bench.Engine;
+
+/**A Board the benchmarks can use: Board already has every method of Engine, so this only declares it. */
+public class BenchBoard extends Board implements Engine
+{
+   private BenchBoard(int height, int width, int numMines)
+   {
+      super(height, width, numMines);
+   }
+
+   /**Makes a board of the given size.
+     *
+     *@param size The name of a Mode, such as HARD, or a custom size as HEIGHTxWIDTH/MINES
+     *@return the board
+     */
+   public static BenchBoard forSize(String size)
+   {
+      if (!size.contains("x"))
+      {
+         NatsMinesweeper.Mode mode = NatsMinesweeper.Mode.valueOf(size);
+         return new BenchBoard(mode.getHeight(), mode.getWidth(), mode.getMines());
+      }
+      String[] parts = size.split("[x/]");
+      return new BenchBoard(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+   }
+}
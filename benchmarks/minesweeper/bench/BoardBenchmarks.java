@@ -0,0 +1,219 @@
+package minesweeper.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*; //For Benchmark, Param, Setup, State and the other JMH annotations
+
+/**JMH benchmarks of the Board engine's hot paths, each run on the three preset modes and on custom sizes up
+  *to 4096x4096. Custom sizes are written HEIGHTxWIDTH/MINES; the largest are mined at 1%, so that a click
+  *from a blank square opens most of the board. Every board is made from a fixed seed, so
+  *runs are comparable with each other.
+  *
+  *Build and run with: mvn -Pbenchmarks package, then java -jar target/benchmarks.jar [JMH options], for example
+  *-p size=HARD to run one size only.
+  *
+  *Benchmarks which change the board set it up again before every call (Level.Invocation). On the small preset
+  *boards the call is then short enough that JMH's own timing adds to the result, so those are best compared
+  *with earlier runs of the same benchmark rather than with each other.
+  */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmarks
+{
+   /**A board of the size being benchmarked, with the same mines and first square every time. */
+   @State(Scope.Thread)
+   public abstract static class BoardState
+   {
+      @Param({"EASY", "INTERMEDIATE", "HARD", "256x256/13516", "1000x1000/10000", "1024x1024/10486", "4096x4096/167772"})
+      public String size;
+
+      Engine board;
+
+      /**The first square revealed, always blank. */
+      int start;
+
+      /**The mines, as placed on the first square. */
+      int[] mines;
+
+      @Setup(Level.Trial)
+      public void makeBoard()
+      {
+         board = Engine.create(size);
+         board.setSeed(1);
+         board.setSafeOpening(true);
+         start = board.size() / 2 + board.getWidth() / 2;
+         board.placeMines(start);
+         mines = board.getMines();
+      }
+
+      /**Starts the same game again: the same mines, and nothing revealed. */
+      void replace()
+      {
+         board.reset();
+         board.placeMines(mines);
+      }
+   }
+
+   /**A board reset before every call, ready for its mines. */
+   public static class Empty extends BoardState
+   {
+      @Setup(Level.Invocation)
+      public void empty() {board.reset();}
+   }
+
+   /**A board with its mines placed again before every call, and nothing revealed. */
+   public static class Ready extends BoardState
+   {
+      @Setup(Level.Invocation)
+      public void ready() {replace();}
+   }
+
+   /**A board with its first square revealed before every call. */
+   public static class Played extends BoardState
+   {
+      @Setup(Level.Invocation)
+      public void played()
+      {
+         replace();
+         board.reveal(start);
+      }
+   }
+
+   /**A board with its first square revealed and the mines around one number on the edge of the opening
+     *flagged before every call, so that chording the number reveals the rest of its neighbors.
+     */
+   public static class Chordable extends BoardState
+   {
+      /**The number chorded, or the first square if no number on the edge can be chorded. */
+      int target;
+
+      private final int[] neighbors = new int[8];
+
+      @Setup(Level.Trial)
+      public void findTarget()
+      {
+         replace();
+         board.reveal(start);
+         target = start;
+         for (int square = 0; square < board.size() && target == start; square++)
+         {
+            if (board.isRevealed(square) && board.getAdjacentMines(square) > 0 && hasHiddenSafeNeighbor(square))
+            {
+               target = square;
+            }
+         }
+      }
+
+      @Setup(Level.Invocation)
+      public void flagAround()
+      {
+         replace();
+         board.reveal(start);
+         int count = board.neighbors(target, neighbors);
+         for (int ii = 0; ii < count; ii++)
+         {
+            if (board.isMine(neighbors[ii]))
+            {
+               board.toggleFlag(neighbors[ii]);
+            }
+         }
+      }
+
+      private boolean hasHiddenSafeNeighbor(int square)
+      {
+         int count = board.neighbors(square, neighbors);
+         for (int ii = 0; ii < count; ii++)
+         {
+            if (!board.isRevealed(neighbors[ii]) && !board.isMine(neighbors[ii]))
+            {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+
+   /**A board with its first square revealed, then one hidden square flagged and unflagged more times than
+     *the board has squares in a single series of moves, before every call.
+     */
+   public static class Toggled extends BoardState
+   {
+      /**The moves, all on the same hidden square. */
+      int[] toggles;
+
+      @Setup(Level.Trial)
+      public void makeToggles()
+      {
+         replace();
+         board.reveal(start);
+         int hidden = 0;
+         while (board.isRevealed(hidden))
+         {
+            hidden++;
+         }
+         toggles = new int[2 * board.size() + 1];
+         Arrays.fill(toggles, Engine.flag(hidden));
+         board.setUndoable(true);
+      }
+
+      @Setup(Level.Invocation)
+      public void toggle()
+      {
+         replace();
+         board.reveal(start);
+         board.applyAll(toggles, 0, toggles.length);
+      }
+   }
+
+   /**Places the mines, random but safe around the first square. */
+   @Benchmark
+   public void placeMines(Empty state)
+   {
+      state.board.placeMines(state.start);
+   }
+
+   /**Places mines already chosen, which leaves the board's own count of the mines around every square: on
+     *the dense sizes (the presets and 256x256) the whole board is counted at once by its topology, and on the
+     *sparse ones each mine is added to its neighbors.
+     */
+   @Benchmark
+   public void countAdjacentMines(Empty state)
+   {
+      state.board.placeMines(state.mines);
+   }
+
+   /**Reveals the first square, which is blank, opening up everything around it. */
+   @Benchmark
+   public int cascade(Ready state)
+   {
+      state.board.reveal(state.start);
+      return state.board.getNumRevealed();
+   }
+
+   /**Chords a number on the edge of the first opening. */
+   @Benchmark
+   public int chord(Chordable state)
+   {
+      state.board.chord(state.target);
+      return state.board.getNumRevealed();
+   }
+
+   /**Undoes a long series of flags on one square, which changed it more times than the board has squares
+     *but must only report it once.
+     */
+   @Benchmark
+   public boolean undoToggles(Toggled state)
+   {
+      return state.board.undo();
+   }
+
+   /**Resets a board after a game. */
+   @Benchmark
+   public void reset(Played state)
+   {
+      state.board.reset();
+   }
+}
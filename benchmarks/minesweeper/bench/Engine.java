@@ -0,0 +1,54 @@
+package minesweeper.bench;
+
+/**The parts of the game's Board used by the benchmarks. The game's classes are all in the default package,
+  *which JMH cannot benchmark from and Java cannot import from, so the benchmarks only see the board through
+  *this interface. BenchBoard, in the default package, is a Board implementing it, created once per trial by
+  *reflection; every call made while timing is an ordinary interface call, which the JIT inlines.
+  */
+public interface Engine
+{
+   int size();
+   int getWidth();
+   int getNumRevealed();
+   void setSeed(long seed);
+   void setSafeOpening(boolean safeOpening);
+   void placeMines(int safeSquare);
+   void placeMines(int[] squares);
+   int[] getMines();
+   boolean isMine(int square);
+   boolean isRevealed(int square);
+   boolean isFlagged(int square);
+   int getAdjacentMines(int square);
+   int neighbors(int square, int[] neighbors);
+   void reveal(int square);
+   void toggleFlag(int square);
+   void chord(int square);
+   void reset();
+   void setUndoable(boolean undoable);
+   int applyAll(int[] moves, int from, int to);
+   boolean undo();
+
+   /**Packs a flag on a square as a move for applyAll, the same way as Board.move.
+     *
+     *@param square The index of the square
+     *@return the packed move
+     */
+   static int flag(int square) {return square << 2 | 1;}
+
+   /**Makes a board of the given size.
+     *
+     *@param size The name of a Mode, such as HARD, or a custom size as HEIGHTxWIDTH/MINES
+     *@return the board
+     */
+   static Engine create(String size)
+   {
+      try
+      {
+         return (Engine) Class.forName("BenchBoard").getMethod("forSize", String.class).invoke(null, size);
+      }
+      catch (ReflectiveOperationException e)
+      {
+         throw new IllegalStateException("Could not make a " + size + " board", e);
+      }
+   }
+}